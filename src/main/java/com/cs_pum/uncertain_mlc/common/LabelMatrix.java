@@ -0,0 +1,297 @@
+package com.cs_pum.uncertain_mlc.common;
+
+import mulan.data.MultiLabelInstances;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.stream.IntStream;
+
+
+/**
+ * Labels of a data set as bit-packed columns: one bitset per label, bit `i` of column `j` is set iff label `j` of
+ * instance `i` is relevant (value >= .5). Counts of a label are popcounts over its column, and co-occurrences of
+ * two labels popcounts over the conjunction of their columns, so statistics over the label space neither touch
+ * the features nor copy any instance.
+ *
+ * Matrices are built with a single pass over the instances and cached per data set by `of(…)`. The cache holds
+ * the data sets weakly, and assumes they are not modified once their labels have been read. Labels of sparse
+ * instances are read from their stored values only, so building the matrix of a sparse data set takes time
+ * proportional to the non-zero labels rather than to the number of attributes.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-22
+ */
+public class LabelMatrix {
+    private static final Map<MultiLabelInstances, LabelMatrix> cache = new WeakHashMap<>();
+
+    private final long[][] columns;
+    private final int numInstances;
+    private final int numLabels;
+    private final boolean labelsFirst;
+
+    private LabelMatrix(long[][] columns, int numInstances, boolean labelsFirst) {
+        this.columns = columns;
+        this.numInstances = numInstances;
+        this.numLabels = columns.length;
+        this.labelsFirst = labelsFirst;
+    }
+
+    /**
+     * Returns the label matrix of a data set, which is only built on the first call per data set.
+     *
+     * @param instances the data set
+     * @param labelsFirst indicates if labels or attributes are at the start of the data section
+     *                    (mulan datasets should have "false", meka data sets should have "true")
+     * @return label matrix of the data set
+     */
+    public static LabelMatrix of(MultiLabelInstances instances, boolean labelsFirst) {
+        synchronized (cache) {
+            LabelMatrix matrix = cache.get(instances);
+
+            if (matrix == null || matrix.labelsFirst != labelsFirst) {
+                matrix = build(instances, labelsFirst);
+                cache.put(instances, matrix);
+            }
+
+            return matrix;
+        }
+    }
+
+    /**
+     * Builds the label matrix of a data set without caching it.
+     *
+     * @param instances the data set
+     * @param labelsFirst indicates if labels or attributes are at the start of the data section
+     * @return label matrix of the data set
+     */
+    public static LabelMatrix build(MultiLabelInstances instances, boolean labelsFirst) {
+        Instances data = instances.getDataSet();
+        int numLabels = instances.getNumLabels();
+        int numInstances = instances.getNumInstances();
+        int labelStart = labelsFirst ? 0 : instances.getFeatureAttributes().size();
+        long[][] columns = new long[numLabels][words(numInstances)];
+
+        for (int i = 0; i < numInstances; i++) {
+            Instance instance = data.get(i);
+
+            if (instance instanceof SparseInstance) {
+                // only the stored values within the label region are visited, absent values are zero
+                for (int p = firstPosition(instance, labelStart); p < instance.numValues(); p++) {
+                    int j = instance.index(p) - labelStart;
+
+                    if (j >= numLabels) {
+                        break;
+                    }
+
+                    if (instance.valueSparse(p) >= .5) {
+                        columns[j][i >>> 6] |= 1L << i;
+                    }
+                }
+            } else {
+                for (int j = 0; j < numLabels; j++) {
+                    if (instance.value(labelStart + j) >= .5) {
+                        columns[j][i >>> 6] |= 1L << i;
+                    }
+                }
+            }
+        }
+
+        return new LabelMatrix(columns, numInstances, labelsFirst);
+    }
+
+    /**
+     * Binary search for the first stored value of a sparse instance with an attribute index >= `index`.
+     *
+     * @return position of the value, or the number of stored values if there is none
+     */
+    private static int firstPosition(Instance instance, int index) {
+        int low = 0;
+        int high = instance.numValues();
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (instance.index(mid) < index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Builds a label matrix from label vectors, e.g. the ground truth of predictions.
+     *
+     * @param labels label values per instance (values >= .5 are considered relevant)
+     * @return label matrix of the vectors
+     */
+    public static LabelMatrix fromRows(List<double[]> labels) {
+        int numLabels = labels.isEmpty() ? 0 : labels.get(0).length;
+        long[][] columns = new long[numLabels][words(labels.size())];
+
+        for (int i = 0; i < labels.size(); i++) {
+            double[] row = labels.get(i);
+
+            if (row.length != numLabels) {
+                throw new IllegalArgumentException("instance " + i + " does not have " + numLabels + " labels");
+            }
+
+            for (int j = 0; j < numLabels; j++) {
+                if (row[j] >= .5) {
+                    columns[j][i >>> 6] |= 1L << i;
+                }
+            }
+        }
+
+        return new LabelMatrix(columns, labels.size(), false);
+    }
+
+    /**
+     * Wraps bit-packed label columns, e.g. collected while streaming over a data set.
+     *
+     * @param columns one bitset per label, bit `i` is set iff the label is relevant for instance `i`
+     * @param numInstances number of instances
+     * @return label matrix of the columns (not copied, unless they are longer than needed for the instances, e.g.
+     *         when they have been grown while streaming; those are truncated, so that all columns of a matrix
+     *         have the same number of words)
+     */
+    public static LabelMatrix fromColumns(long[][] columns, int numInstances) {
+        int words = words(numInstances);
+        long[][] trimmed = new long[columns.length][];
+
+        for (int j = 0; j < columns.length; j++) {
+            if (columns[j].length < words) {
+                throw new IllegalArgumentException("columns do not cover " + numInstances + " instances");
+            }
+
+            trimmed[j] = columns[j].length == words ? columns[j] : Arrays.copyOf(columns[j], words);
+        }
+
+        return new LabelMatrix(trimmed, numInstances, false);
+    }
+
+    private static int words(int numInstances) {
+        return (numInstances + 63) >>> 6;
+    }
+
+    public int getNumInstances() {
+        return this.numInstances;
+    }
+
+    public int getNumLabels() {
+        return this.numLabels;
+    }
+
+    public boolean isRelevant(int instance, int label) {
+        return (this.columns[label][instance >>> 6] & (1L << instance)) != 0;
+    }
+
+    /**
+     * @param label label index
+     * @return column of the label, bit `i` is set iff the label is relevant for instance `i` (must not be modified)
+     */
+    public long[] getColumn(int label) {
+        return this.columns[label];
+    }
+
+    /**
+     * Restricts the matrix to a subset of its labels. The columns are shared, not copied.
+     *
+     * @param labels indices of the labels to retain, in the order of the returned matrix
+     * @return label matrix of the retained labels
+     */
+    public LabelMatrix select(int[] labels) {
+        long[][] selected = new long[labels.length][];
+
+        for (int j = 0; j < labels.length; j++) {
+            selected[j] = this.columns[labels[j]];
+        }
+
+        return new LabelMatrix(selected, this.numInstances, this.labelsFirst);
+    }
+
+    /**
+     * @param label label index
+     * @return number of instances the label is relevant for
+     */
+    public int getCount(int label) {
+        long[] column = this.columns[label];
+        int count = 0;
+
+        for (long word : column) {
+            count += Long.bitCount(word);
+        }
+
+        return count;
+    }
+
+    /**
+     * @return number of instances each label is relevant for
+     */
+    public int[] getCounts() {
+        int[] counts = new int[this.numLabels];
+
+        for (int j = 0; j < this.numLabels; j++) {
+            counts[j] = this.getCount(j);
+        }
+
+        return counts;
+    }
+
+    /**
+     * @param a label index
+     * @param b label index
+     * @return number of instances both labels are relevant for
+     */
+    public int getCooccurrence(int a, int b) {
+        long[] columnA = this.columns[a];
+        long[] columnB = this.columns[b];
+        int count = 0;
+
+        for (int w = 0; w < columnA.length; w++) {
+            count += Long.bitCount(columnA[w] & columnB[w]);
+        }
+
+        return count;
+    }
+
+    /**
+     * Computes the co-occurrences of all pairs of labels. The `L(L + 1) / 2` distinct pairs are evaluated in
+     * parallel on the common fork-join pool, each with a single AND and popcount pass over the two columns.
+     *
+     * @return symmetric matrix, entry `(a, b)` is the number of instances both labels are relevant for (the
+     * diagonal contains the counts)
+     */
+    public int[][] getCooccurrences() {
+        int numPairs = this.numLabels * (this.numLabels + 1) / 2;
+        int[] first = new int[numPairs];
+        int[] second = new int[numPairs];
+        int p = 0;
+
+        for (int a = 0; a < this.numLabels; a++) {
+            for (int b = a; b < this.numLabels; b++) {
+                first[p] = a;
+                second[p] = b;
+                p++;
+            }
+        }
+
+        int[][] cooccurrences = new int[this.numLabels][this.numLabels];
+
+        // every pair writes two distinct cells, so the tasks do not interfere
+        IntStream.range(0, numPairs).parallel().forEach(k -> {
+            int count = this.getCooccurrence(first[k], second[k]);
+            cooccurrences[first[k]][second[k]] = count;
+            cooccurrences[second[k]][first[k]] = count;
+        });
+
+        return cooccurrences;
+    }
+}
@@ -1,43 +1,106 @@
 package com.cs_pum.uncertain_mlc.common;
 
 import mulan.data.MultiLabelInstances;
-import weka.core.Instances;
 
 
 public class LabelMetadata {
+    /**
+     * Counts the instances each label is relevant for, on the (cached) `LabelMatrix` of the data set.
+     */
     public static int[] getLabelCounts(MultiLabelInstances instances, boolean labelsFirst) {
-        int[] counts = new int[instances.getNumLabels()];
+        return LabelMatrix.of(instances, labelsFirst).getCounts();
+    }
 
-        Instances data = instances.getDataSet();
-        int numLabels = instances.getNumLabels();
-        int numInstances = instances.getNumInstances();
-        int numFeatures = instances.getFeatureAttributes().size();
+    public static double[] getLabelFrequencies(MultiLabelInstances instances, boolean labelsFirst) {
+        int[] counts = getLabelCounts(instances, labelsFirst);
+        double[] out = new double[counts.length];
 
-        for (int j = 0; j < numLabels; j++) {
-            counts[j] = 0;
+        for (int i = 0; i < counts.length; i++) {
+            out[i] = (1.* counts[i]) / instances.getNumInstances();
         }
 
-        for (int i = 0; i < numInstances; i++) {
-            for (int j = 0; j < numLabels; j++) {
-                if (labelsFirst && (data.get(i).toDoubleArray()[j] >= .5)) {
-                    counts[j] += 1;
-                } else if (!labelsFirst && (data.get(i).toDoubleArray()[j + numFeatures] >= .5)) {
-                    counts[j] += 1;
-                }
+        return out;
+    }
+
+    /**
+     * Counts the instances each pair of labels is relevant for (see `LabelMatrix.getCooccurrences()`).
+     *
+     * @return symmetric L×L matrix, the diagonal contains the label counts
+     */
+    public static int[][] getCooccurrences(MultiLabelInstances instances, boolean labelsFirst) {
+        return LabelMatrix.of(instances, labelsFirst).getCooccurrences();
+    }
+
+    public static double[][] getConditionalProbabilities(MultiLabelInstances instances, boolean labelsFirst) {
+        return getConditionalProbabilities(getCooccurrences(instances, labelsFirst));
+    }
+
+    /**
+     * Estimates the probability of each label given another one from co-occurrence counts.
+     *
+     * @param cooccurrences co-occurrence counts as returned by `getCooccurrences(…)`
+     * @return entry `(a, b)` is the estimate of `P(b = 1 | a = 1)`, NaN if label `a` never occurs
+     */
+    public static double[][] getConditionalProbabilities(int[][] cooccurrences) {
+        int numLabels = cooccurrences.length;
+        double[][] out = new double[numLabels][numLabels];
+
+        for (int a = 0; a < numLabels; a++) {
+            for (int b = 0; b < numLabels; b++) {
+                out[a][b] = cooccurrences[a][a] == 0 ? Double.NaN : (1. * cooccurrences[a][b]) / cooccurrences[a][a];
             }
         }
 
-        return counts;
+        return out;
     }
 
-    public static double[] getLabelFrequencies(MultiLabelInstances instances, boolean labelsFirst) {
-        int[] counts = getLabelCounts(instances, labelsFirst);
-        double[] out = new double[counts.length];
+    public static double[][] getMutualInformation(MultiLabelInstances instances, boolean labelsFirst) {
+        return getMutualInformation(getCooccurrences(instances, labelsFirst), instances.getNumInstances());
+    }
 
-        for (int i = 0; i < counts.length; i++) {
-            out[i] = (1.* counts[i]) / instances.getNumInstances();
+    /**
+     * Estimates the mutual information (in bits) between each pair of labels from co-occurrence counts, i.e. from
+     * the 2×2 contingency table of every pair.
+     *
+     * @param cooccurrences co-occurrence counts as returned by `getCooccurrences(…)`
+     * @param numInstances number of instances the counts are taken over
+     * @return symmetric matrix of the mutual information, the diagonal contains the entropy of each label
+     */
+    public static double[][] getMutualInformation(int[][] cooccurrences, int numInstances) {
+        int numLabels = cooccurrences.length;
+        double[][] out = new double[numLabels][numLabels];
+
+        for (int a = 0; a < numLabels; a++) {
+            for (int b = a; b < numLabels; b++) {
+                int both = cooccurrences[a][b];
+                int onlyA = cooccurrences[a][a] - both;
+                int onlyB = cooccurrences[b][b] - both;
+                int none = numInstances - both - onlyA - onlyB;
+                int countA = cooccurrences[a][a];
+                int countB = cooccurrences[b][b];
+
+                double mi = mutualInformationTerm(both, countA, countB, numInstances)
+                        + mutualInformationTerm(onlyA, countA, numInstances - countB, numInstances)
+                        + mutualInformationTerm(onlyB, numInstances - countA, countB, numInstances)
+                        + mutualInformationTerm(none, numInstances - countA, numInstances - countB, numInstances);
+
+                // rounding may yield tiny negative values for independent labels
+                out[a][b] = Math.max(0, mi);
+                out[b][a] = out[a][b];
+            }
         }
 
         return out;
     }
-}
\ No newline at end of file
+
+    /**
+     * Term `p(x, y) log2(p(x, y) / (p(x) p(y)))` of the mutual information, from counts.
+     */
+    private static double mutualInformationTerm(int joint, int marginalA, int marginalB, int n) {
+        if (joint == 0) {
+            return 0;
+        }
+
+        return (1. * joint / n) * Math.log((1. * joint * n) / ((double) marginalA * marginalB)) / Math.log(2);
+    }
+}
@@ -0,0 +1,22 @@
+package com.cs_pum.uncertain_mlc.common;
+
+
+/**
+ * Criterion to select the labels that are retained by `LabelSpaceReduction`, see `LabelRankings` for the
+ * available ones.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-23
+ */
+public interface LabelRanking {
+    String getName();
+
+    /**
+     * Selects exactly `min(k, L)` labels. Ties are broken deterministically, in favour of the lower label index.
+     *
+     * @param labels labels of the data set
+     * @param k number of labels to select
+     * @return indices of the selected labels, in ascending order
+     */
+    int[] select(LabelMatrix labels, int k);
+}
@@ -0,0 +1,172 @@
+package com.cs_pum.uncertain_mlc.common;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+
+/**
+ * The label rankings available for `LabelSpaceReduction`:
+ *
+ * - `frequency()`: the most frequent labels, as in the original reduction
+ * - `entropy()`: the labels with the highest (binary) entropy, i.e. with a frequency closest to 1/2
+ * - `coverage()`: greedily the label that is relevant for the most instances without any selected label yet,
+ *   so that as many instances as possible keep at least one relevant label
+ *
+ * @author Christian Schulze
+ * @since  2018-07-23
+ */
+public class LabelRankings {
+    public static LabelRanking frequency() {
+        return new ScoreRanking("frequency") {
+            @Override
+            double score(LabelMatrix labels, int label) {
+                return labels.getCount(label);
+            }
+        };
+    }
+
+    public static LabelRanking entropy() {
+        return new ScoreRanking("entropy") {
+            @Override
+            double score(LabelMatrix labels, int label) {
+                double p = (1. * labels.getCount(label)) / labels.getNumInstances();
+
+                return p <= 0 || p >= 1 ? 0 : -p * Math.log(p) - (1 - p) * Math.log(1 - p);
+            }
+        };
+    }
+
+    public static LabelRanking coverage() {
+        return new LabelRanking() {
+            @Override
+            public String getName() {
+                return "coverage";
+            }
+
+            /**
+             * Selects `k` times the label with the most instances not covered so far (ties by frequency, then by
+             * index). Each round is a pass over the columns of the unselected labels, O(k L n / 64) in total.
+             */
+            @Override
+            public int[] select(LabelMatrix labels, int k) {
+                int numLabels = labels.getNumLabels();
+                int numSelected = Math.min(k, numLabels);
+                int[] counts = labels.getCounts();
+                long[] covered = new long[(labels.getNumInstances() + 63) >>> 6];
+                boolean[] selected = new boolean[numLabels];
+                int[] out = new int[numSelected];
+
+                for (int s = 0; s < numSelected; s++) {
+                    int best = -1;
+                    int bestGain = -1;
+
+                    for (int j = 0; j < numLabels; j++) {
+                        if (selected[j]) {
+                            continue;
+                        }
+
+                        long[] column = labels.getColumn(j);
+                        int gain = 0;
+
+                        for (int w = 0; w < column.length; w++) {
+                            gain += Long.bitCount(column[w] & ~covered[w]);
+                        }
+
+                        if (gain > bestGain || gain == bestGain && counts[j] > counts[best]) {
+                            best = j;
+                            bestGain = gain;
+                        }
+                    }
+
+                    long[] column = labels.getColumn(best);
+
+                    for (int w = 0; w < column.length; w++) {
+                        covered[w] |= column[w];
+                    }
+
+                    selected[best] = true;
+                    out[s] = best;
+                }
+
+                Arrays.sort(out);
+
+                return out;
+            }
+        };
+    }
+
+    /**
+     * Selects the `k` labels with the highest scores with a bounded min-heap, in O(L log k). The heap is ordered
+     * by score and then by descending index, so its head is always the label to drop first and equal scores are
+     * resolved in favour of lower indices.
+     *
+     * @param scores score per label
+     * @param k number of labels to select
+     * @return indices of the `min(k, L)` labels with the highest scores, in ascending order
+     */
+    public static int[] topK(double[] scores, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k needs to be >= 0");
+        }
+
+        int numSelected = Math.min(k, scores.length);
+
+        if (numSelected == 0) {
+            return new int[0];
+        }
+
+        PriorityQueue<Integer> heap = new PriorityQueue<>(numSelected, (a, b) -> {
+            int c = Double.compare(scores[a], scores[b]);
+
+            return c != 0 ? c : Integer.compare(b, a);
+        });
+
+        for (int j = 0; j < scores.length; j++) {
+            if (heap.size() < numSelected) {
+                heap.add(j);
+            } else if (heap.comparator().compare(j, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(j);
+            }
+        }
+
+        int[] out = new int[numSelected];
+
+        for (int s = 0; s < numSelected; s++) {
+            out[s] = heap.poll();
+        }
+
+        Arrays.sort(out);
+
+        return out;
+    }
+
+    /**
+     * Ranking by a score per label, selected with `topK(…)`.
+     */
+    private static abstract class ScoreRanking implements LabelRanking {
+        private final String name;
+
+        ScoreRanking(String name) {
+            this.name = name;
+        }
+
+        abstract double score(LabelMatrix labels, int label);
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public int[] select(LabelMatrix labels, int k) {
+            double[] scores = new double[labels.getNumLabels()];
+
+            for (int j = 0; j < scores.length; j++) {
+                scores[j] = this.score(labels, j);
+            }
+
+            return topK(scores, k);
+        }
+    }
+}
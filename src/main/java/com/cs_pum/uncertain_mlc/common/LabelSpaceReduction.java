@@ -1,6 +1,7 @@
 package com.cs_pum.uncertain_mlc.common;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import mulan.data.InvalidDataFormatException;
 import mulan.data.LabelNodeImpl;
@@ -16,7 +17,10 @@ import weka.core.*;
  * Krzysztof Dembczyński, Weiwei Cheng, Eyke Hüllermeier.
  *
  * Considering the number of occurrence of a label in a data set, the top k occurring labels are retained, the
- * rest is removed in order to reduce the label space dimensionality due to computational concerns.
+ * rest is removed in order to reduce the label space dimensionality due to computational concerns. Other criteria
+ * to select the retained labels by can be passed as `LabelRanking`. Sparse instances are reduced to sparse
+ * instances holding only their non-zero features and retained labels. `view(…)` selects the labels without
+ * copying the data, which are only copied once a learner needs them.
  *
  * @author Christian Schulze
  * @since  2018-06-25
@@ -33,97 +37,136 @@ public class LabelSpaceReduction {
      * @throws InvalidDataFormatException
      */
     public static MultiLabelInstances reduceLabelSpace(MultiLabelInstances instances, int numLabelsToKeep, boolean labelsFirst) throws InvalidDataFormatException {
-        if (instances.getNumLabels() <= numLabelsToKeep) {
-            return instances;
-        }
+        return reduceLabelSpace(instances, numLabelsToKeep, labelsFirst, LabelRankings.frequency());
+    }
+
+    /**
+     * Reduces the labels of a data set to exactly `k` labels selected by a ranking (see `LabelRankings`).
+     *
+     * @param instances the data set
+     * @param numLabelsToKeep number of labels to retain
+     * @param labelsFirst indicates if labels or attributes are at the start of the data section
+     *                    (mulan datasets should have "false", meka data sets should have "true")
+     * @param ranking criterion the retained labels are selected by
+     * @return data set with reduced number of labels
+     * @throws InvalidDataFormatException
+     */
+    public static MultiLabelInstances reduceLabelSpace(MultiLabelInstances instances, int numLabelsToKeep,
+                                                       boolean labelsFirst, LabelRanking ranking)
+            throws InvalidDataFormatException {
+        return view(instances, numLabelsToKeep, labelsFirst, ranking).materialize();
+    }
+
+    /**
+     * Selects the top `k` occurring labels of a data set without copying it, see `LabelSpaceView`.
+     *
+     * @param instances the data set
+     * @param numLabelsToKeep number of labels to retain
+     * @param labelsFirst indicates if labels or attributes are at the start of the data section
+     *                    (mulan datasets should have "false", meka data sets should have "true")
+     * @return view of the data set with the retained labels
+     */
+    public static LabelSpaceView view(MultiLabelInstances instances, int numLabelsToKeep, boolean labelsFirst) {
+        return view(instances, numLabelsToKeep, labelsFirst, LabelRankings.frequency());
+    }
 
+    /**
+     * Selects `k` labels of a data set by a ranking (see `LabelRankings`) without copying it, see `LabelSpaceView`.
+     *
+     * @param instances the data set
+     * @param numLabelsToKeep number of labels to retain
+     * @param labelsFirst indicates if labels or attributes are at the start of the data section
+     *                    (mulan datasets should have "false", meka data sets should have "true")
+     * @param ranking criterion the retained labels are selected by
+     * @return view of the data set with the retained labels
+     */
+    public static LabelSpaceView view(MultiLabelInstances instances, int numLabelsToKeep, boolean labelsFirst,
+                                      LabelRanking ranking) {
+        LabelMatrix labels = LabelMatrix.of(instances, labelsFirst);
+
+        return new LabelSpaceView(instances, labelsFirst, ranking.select(labels, numLabelsToKeep));
+    }
+
+    /**
+     * Copies a data set with a subset of its labels into new instances.
+     *
+     * @param instances the data set
+     * @param labelsFirst indicates if labels or attributes are at the start of the data section
+     * @param keptLabels indices of the labels to retain, in ascending order
+     * @return data set with the retained labels only
+     * @throws InvalidDataFormatException
+     */
+    static MultiLabelInstances project(MultiLabelInstances instances, boolean labelsFirst, int[] keptLabels)
+            throws InvalidDataFormatException {
         Instances data = instances.getDataSet();
         LabelsMetaDataImpl labelsData = new LabelsMetaDataImpl();
         int numLabels = instances.getNumLabels();
         int numInstances = instances.getNumInstances();
         int numFeatures = instances.getFeatureAttributes().size();
         boolean[] keepLabels = new boolean[numLabels];
-        int[] counts = LabelMetadata.getLabelCounts(instances, labelsFirst);
-
-        // start and end of label/feature regions in the data are set dynamically
-        // to reduce boilerplate code further down. offsets hence refer to different regions
-        // depending on the data type (meka/mulan).
-        int featureStart;
-        int labelStart;
-
-        if (labelsFirst) {
-            featureStart = numLabels;
-            labelStart = 0;
-        } else {
-            featureStart = 0;
-            labelStart = numFeatures;
-        }
 
-        int bound = 0;
+        // first index of the labels in the data, depending on the data type (meka/mulan)
+        int labelStart = labelsFirst ? 0 : numFeatures;
 
-        /*
-        get minimal frequency (lower bound) for which there are k
-        frequencies greater than the bound
-        */
-        for (int i = 0; i < numLabels; i++) {
-            int c = 0;
-            bound = counts[i];
-
-            for (int j = 0; j < numLabels; j++) {
-                if (counts[j] >= bound) {
-                    c += 1;
-                }
-            }
-
-            if (c == numLabelsToKeep) {
-                break;
-            }
-        }
-
-        for (int i = 0; i < numLabels; i++) {
-            keepLabels[i] = counts[i] >= bound;
+        for (int j : keptLabels) {
+            keepLabels[j] = true;
         }
 
-        // set up attribute meta data
+        // set up attribute meta data, along with the index of each retained attribute in the reduced data
         ArrayList<Attribute> attrs = new ArrayList<>();
+        int[] newIndex = new int[numFeatures + numLabels];
 
         for (int i = 0; i < numFeatures + numLabels; i++) {
-            Attribute attr = data.attribute(i).copy(data.attribute(i).name());
+            boolean isLabel = i >= labelStart && i < labelStart + numLabels;
+            newIndex[i] = -1;
 
-            if (!labelsFirst && i >= numFeatures && keepLabels[i - numFeatures]) {
-                labelsData.addRootNode(new LabelNodeImpl(attr.name()));
+            if (!isLabel || keepLabels[i - labelStart]) {
+                Attribute attr = data.attribute(i).copy(data.attribute(i).name());
+                newIndex[i] = attrs.size();
                 attrs.add(attr);
-            } else if (labelsFirst && i < numLabels && keepLabels[i]) {
-                labelsData.addRootNode(new LabelNodeImpl(attr.name()));
-                attrs.add(attr);
-            }
 
-            // add regular features
-            if (!labelsFirst && i < numFeatures || labelsFirst && i >= numLabels) {
-                attrs.add(attr);
+                if (isLabel) {
+                    labelsData.addRootNode(new LabelNodeImpl(attr.name()));
+                }
             }
         }
 
-        // set up instances
+        // set up instances, sparse instances stay sparse
         Instances insts = new Instances(data.relationName(), attrs, numInstances);
+        double[] values = new double[attrs.size()];
+        int[] indices = new int[attrs.size()];
 
         for (int i = 0; i < numInstances; i++) {
             Instance inst = data.get(i);
-            DenseInstance filteredInstance = new DenseInstance(numFeatures + numLabelsToKeep);
+            Instance filteredInstance;
 
-            // copy features
-            for (int j = featureStart; j < numFeatures; j++) {
-                filteredInstance.setValue(j, inst.value(j));
-            }
+            if (inst instanceof SparseInstance) {
+                int numValues = 0;
+
+                // only the stored values are copied, from ascending indices that stay ascending
+                for (int p = 0; p < inst.numValues(); p++) {
+                    int index = newIndex[inst.index(p)];
 
-            int labelIndex = labelStart;
+                    if (index >= 0 && inst.valueSparse(p) != 0) {
+                        values[numValues] = inst.valueSparse(p);
+                        indices[numValues] = index;
+                        numValues++;
+                    }
+                }
+
+                filteredInstance = new SparseInstance(inst.weight(), Arrays.copyOf(values, numValues),
+                        Arrays.copyOf(indices, numValues), attrs.size());
+            } else {
+                double[] dense = new double[attrs.size()];
 
-            // copy filtered labels
-            for (int k = 0; k < numLabels; k++) {
-                if (keepLabels[k]) {
-                    filteredInstance.setValue(labelIndex, inst.value(k + labelStart));
-                    labelIndex++;
+                for (int j = 0; j < newIndex.length; j++) {
+                    // labels are copied as they are, so that missing labels stay missing
+                    if (newIndex[j] >= 0) {
+                        dense[newIndex[j]] = inst.value(j);
+                    }
                 }
+
+                filteredInstance = new DenseInstance(inst.weight(), dense);
             }
 
             filteredInstance.setDataset(insts);
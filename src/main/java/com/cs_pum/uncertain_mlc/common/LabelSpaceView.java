@@ -0,0 +1,156 @@
+package com.cs_pum.uncertain_mlc.common;
+
+import mulan.data.InvalidDataFormatException;
+import mulan.data.MultiLabelInstances;
+import weka.core.Instance;
+
+
+/**
+ * A data set restricted to a subset of its labels, without copying it: features are read from the instances of
+ * the original data set, labels are remapped to the retained ones and read from its (cached) `LabelMatrix`. Label
+ * statistics, ground truth and the features of single instances are thus available without any copy of the data.
+ *
+ * Weka learners need the reduced data as `Instances`, which are only built by `materialize()`, once, on the first
+ * call. Views are created by `LabelSpaceReduction.view(…)`.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-24
+ */
+public class LabelSpaceView {
+    private final MultiLabelInstances source;
+    private final boolean labelsFirst;
+    private final int[] labels;
+    private final int labelStart;
+    private final LabelMatrix labelMatrix;
+    private MultiLabelInstances materialized = null;
+
+    /**
+     * @param source the data set
+     * @param labelsFirst indicates if labels or attributes are at the start of the data section
+     * @param labels indices of the retained labels, in ascending order
+     */
+    public LabelSpaceView(MultiLabelInstances source, boolean labelsFirst, int[] labels) {
+        for (int j = 0; j < labels.length; j++) {
+            if (labels[j] < 0 || labels[j] >= source.getNumLabels() || j > 0 && labels[j] <= labels[j - 1]) {
+                throw new IllegalArgumentException("labels need to be distinct, ascending label indices");
+            }
+        }
+
+        this.source = source;
+        this.labelsFirst = labelsFirst;
+        this.labels = labels.clone();
+        this.labelStart = labelsFirst ? 0 : source.getFeatureAttributes().size();
+        this.labelMatrix = LabelMatrix.of(source, labelsFirst).select(this.labels);
+    }
+
+    public MultiLabelInstances getSource() {
+        return this.source;
+    }
+
+    public int getNumInstances() {
+        return this.source.getNumInstances();
+    }
+
+    public int getNumLabels() {
+        return this.labels.length;
+    }
+
+    public int getNumFeatures() {
+        return this.source.getFeatureAttributes().size();
+    }
+
+    /**
+     * @return indices of the retained labels among the labels of the original data set
+     */
+    public int[] getLabels() {
+        return this.labels.clone();
+    }
+
+    public String[] getLabelNames() {
+        String[] names = new String[this.labels.length];
+
+        for (int j = 0; j < this.labels.length; j++) {
+            names[j] = this.source.getDataSet().attribute(this.labelStart + this.labels[j]).name();
+        }
+
+        return names;
+    }
+
+    /**
+     * @return label matrix of the retained labels, sharing the columns of the original one
+     */
+    public LabelMatrix getLabelMatrix() {
+        return this.labelMatrix;
+    }
+
+    public int[] getLabelCounts() {
+        return this.labelMatrix.getCounts();
+    }
+
+    public double[] getLabelFrequencies() {
+        int[] counts = this.getLabelCounts();
+        double[] out = new double[counts.length];
+
+        for (int j = 0; j < counts.length; j++) {
+            out[j] = (1. * counts[j]) / this.getNumInstances();
+        }
+
+        return out;
+    }
+
+    /**
+     * @return average number of relevant retained labels per instance
+     */
+    public double getCardinality() {
+        long sum = 0;
+
+        for (int count : this.getLabelCounts()) {
+            sum += count;
+        }
+
+        return (1. * sum) / this.getNumInstances();
+    }
+
+    /**
+     * @param instance index of the instance
+     * @return instance of the original data set, with all of its labels
+     */
+    public Instance getInstance(int instance) {
+        return this.source.getDataSet().get(instance);
+    }
+
+    /**
+     * @param instance index of the instance
+     * @return retained labels of the instance (1 if relevant, else 0)
+     */
+    public double[] getGroundTruth(int instance) {
+        double[] groundTruth = new double[this.labels.length];
+
+        for (int j = 0; j < this.labels.length; j++) {
+            groundTruth[j] = this.labelMatrix.isRelevant(instance, j) ? 1 : 0;
+        }
+
+        return groundTruth;
+    }
+
+    public synchronized boolean isMaterialized() {
+        return this.materialized != null;
+    }
+
+    /**
+     * Returns the reduced data as instances, see `LabelSpaceReduction`. They are copied on the first call only,
+     * and are the original data set if all of its labels are retained.
+     *
+     * @return data set with the retained labels only
+     * @throws InvalidDataFormatException
+     */
+    public synchronized MultiLabelInstances materialize() throws InvalidDataFormatException {
+        if (this.materialized == null) {
+            this.materialized = this.labels.length == this.source.getNumLabels()
+                    ? this.source
+                    : LabelSpaceReduction.project(this.source, this.labelsFirst, this.labels);
+        }
+
+        return this.materialized;
+    }
+}
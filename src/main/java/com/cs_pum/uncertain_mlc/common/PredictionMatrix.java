@@ -0,0 +1,116 @@
+package com.cs_pum.uncertain_mlc.common;
+
+import java.util.List;
+
+
+/**
+ * Flat, primitive representation of the probabilistic predictions for a set of instances. Confidences are kept
+ * as a row-major matrix (`numLabels` consecutive values per instance), the ground truth is packed into a bitset
+ * where bit `i * numLabels + j` is set iff label `j` of instance `i` is relevant.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-04
+ */
+public class PredictionMatrix {
+    private final double[] confidences;
+    private final long[] groundTruth;
+    private final int numInstances;
+    private final int numLabels;
+
+    public PredictionMatrix(double[] confidences, long[] groundTruth, int numInstances, int numLabels) {
+        if (confidences.length < (long) numInstances * numLabels) {
+            throw new IllegalArgumentException("confidences hold less than numInstances * numLabels values");
+        }
+
+        if (groundTruth.length < words(numInstances, numLabels)) {
+            throw new IllegalArgumentException("ground truth holds less than numInstances * numLabels bits");
+        }
+
+        this.confidences = confidences;
+        this.groundTruth = groundTruth;
+        this.numInstances = numInstances;
+        this.numLabels = numLabels;
+    }
+
+    /**
+     * Packs predictions as collected by the experiments into a matrix.
+     *
+     * @param confidences confidences, one array per instance
+     * @param groundTruth ground truth, one array per instance (values >= .5 are considered relevant)
+     * @return packed predictions
+     */
+    public static PredictionMatrix fromLists(List<double[]> confidences, List<double[]> groundTruth) {
+        if (confidences.size() != groundTruth.size()) {
+            throw new IllegalArgumentException("number of confidences and ground truths differs");
+        }
+
+        int numInstances = confidences.size();
+        int numLabels = numInstances > 0 ? confidences.get(0).length : 0;
+        double[] flat = new double[numInstances * numLabels];
+        long[] bits = new long[words(numInstances, numLabels)];
+
+        for (int i = 0; i < numInstances; i++) {
+            double[] c = confidences.get(i);
+            double[] gt = groundTruth.get(i);
+
+            if (c.length != numLabels || gt.length != numLabels) {
+                throw new IllegalArgumentException("instance " + i + " does not have " + numLabels + " labels");
+            }
+
+            System.arraycopy(c, 0, flat, i * numLabels, numLabels);
+
+            for (int j = 0; j < numLabels; j++) {
+                if (gt[j] >= .5) {
+                    setBit(bits, i * numLabels + j);
+                }
+            }
+        }
+
+        return new PredictionMatrix(flat, bits, numInstances, numLabels);
+    }
+
+    /**
+     * Returns the number of longs needed to pack the ground truth of `numInstances` instances.
+     */
+    public static int words(int numInstances, int numLabels) {
+        return (int) (((long) numInstances * numLabels + 63) >>> 6);
+    }
+
+    public static boolean getBit(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public static void setBit(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    public double getConfidence(int instance, int label) {
+        return this.confidences[instance * this.numLabels + label];
+    }
+
+    public boolean isRelevant(int instance, int label) {
+        return getBit(this.groundTruth, instance * this.numLabels + label);
+    }
+
+    public int getNumInstances() {
+        return this.numInstances;
+    }
+
+    public int getNumLabels() {
+        return this.numLabels;
+    }
+
+    /**
+     * @return the row-major confidences backing this matrix (not a copy)
+     */
+    public double[] getConfidences() {
+        return this.confidences;
+    }
+
+    /**
+     * @return the packed ground truth backing this matrix (not a copy)
+     */
+    public long[] getGroundTruth() {
+        return this.groundTruth;
+    }
+}
@@ -0,0 +1,123 @@
+package com.cs_pum.uncertain_mlc.evaluation;
+
+import java.util.Arrays;
+
+
+/**
+ * Replicates of a bootstrap of the uncertain hamming loss (see `PoissonBootstrap`): the loss and its
+ * uncertainty component at a fixed tau, and the optimal tau, each alongside its estimate on the original data.
+ * Intervals are percentile intervals over the replicates.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-18
+ */
+public class BootstrapResult {
+    private final double[] losses;
+    private final double[] uncertainties;
+    private final double[] optimalTaus;
+    private final double loss;
+    private final double uncertainty;
+    private final double optimalTau;
+
+    /**
+     * @param losses loss per replicate
+     * @param uncertainties uncertainty component per replicate
+     * @param optimalTaus optimal tau per replicate
+     * @param loss loss on the original data
+     * @param uncertainty uncertainty component on the original data
+     * @param optimalTau optimal tau on the original data
+     */
+    public BootstrapResult(double[] losses, double[] uncertainties, double[] optimalTaus, double loss,
+                           double uncertainty, double optimalTau) {
+        this.losses = losses;
+        this.uncertainties = uncertainties;
+        this.optimalTaus = optimalTaus;
+        this.loss = loss;
+        this.uncertainty = uncertainty;
+        this.optimalTau = optimalTau;
+    }
+
+    public int getNumReplicates() {
+        return this.losses.length;
+    }
+
+    public double[] getLosses() {
+        return this.losses;
+    }
+
+    public double[] getUncertainties() {
+        return this.uncertainties;
+    }
+
+    public double[] getOptimalTaus() {
+        return this.optimalTaus;
+    }
+
+    public double getLoss() {
+        return this.loss;
+    }
+
+    public double getUncertainty() {
+        return this.uncertainty;
+    }
+
+    public double getOptimalTau() {
+        return this.optimalTau;
+    }
+
+    /**
+     * @param level confidence level, e.g. .95
+     * @return lower and upper bound of the loss
+     */
+    public double[] getLossInterval(double level) {
+        return interval(this.losses, level);
+    }
+
+    /**
+     * @param level confidence level, e.g. .95
+     * @return lower and upper bound of the uncertainty component
+     */
+    public double[] getUncertaintyInterval(double level) {
+        return interval(this.uncertainties, level);
+    }
+
+    /**
+     * @param level confidence level, e.g. .95
+     * @return lower and upper bound of the optimal tau
+     */
+    public double[] getOptimalTauInterval(double level) {
+        return interval(this.optimalTaus, level);
+    }
+
+    @Override
+    public String toString() {
+        double[] l = this.getLossInterval(.95);
+        double[] u = this.getUncertaintyInterval(.95);
+        double[] t = this.getOptimalTauInterval(.95);
+
+        return String.format("loss: %.4f [%.4f, %.4f]\nuncertainty: %.4f [%.4f, %.4f]\noptimal tau: %.4f [%.4f, %.4f]",
+                this.loss, l[0], l[1], this.uncertainty, u[0], u[1], this.optimalTau, t[0], t[1]);
+    }
+
+    private static double[] interval(double[] replicates, double level) {
+        if (level <= 0 || level >= 1) {
+            throw new IllegalArgumentException("level needs to be > 0. and < 1.");
+        }
+
+        double[] sorted = replicates.clone();
+        Arrays.sort(sorted);
+
+        return new double[]{percentile(sorted, (1 - level) / 2), percentile(sorted, (1 + level) / 2)};
+    }
+
+    /**
+     * Linearly interpolated percentile of sorted values.
+     */
+    private static double percentile(double[] sorted, double q) {
+        double position = q * (sorted.length - 1);
+        int below = (int) Math.floor(position);
+        int above = Math.min(below + 1, sorted.length - 1);
+
+        return sorted[below] + (position - below) * (sorted[above] - sorted[below]);
+    }
+}
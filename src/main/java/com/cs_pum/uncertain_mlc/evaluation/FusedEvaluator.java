@@ -0,0 +1,168 @@
+package com.cs_pum.uncertain_mlc.evaluation;
+
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Evaluates several measures within a single pass over the predictions. Per instance the labels are classified
+ * once (certain/uncertain, bipartition vs. ground truth) into `InstanceStatistics`, from which every
+ * `FusedMeasure` derives its instance-wise loss, instead of each measure re-reading the confidences and
+ * re-applying the thresholds on its own.
+ *
+ * Like `UncertainHammingLoss`, a label is uncertain iff `tau <= p <= 1 - tau`, or `lower[j] <= p <= upper[j]`
+ * if per-label thresholds are set via `setThresholds(…)`.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-16
+ */
+public class FusedEvaluator {
+    private final List<FusedMeasure> measures;
+    private double tau = 1./3;
+    private double omega = 1.0;
+    /* per-label thresholds, null if the symmetric tau applies to all labels */
+    private double[] lower = null;
+    private double[] upper = null;
+
+    /**
+     * Creates an evaluator computing all measures of `FusedMeasures`.
+     */
+    public FusedEvaluator() {
+        this(FusedMeasures.all());
+    }
+
+    public FusedEvaluator(List<FusedMeasure> measures) {
+        this.measures = new ArrayList<>(measures);
+    }
+
+    public FusedEvaluator(double tau, double omega) {
+        this();
+        setTau(tau);
+        setOmega(omega);
+    }
+
+    public double getTau() {
+        return tau;
+    }
+
+    public void setTau(double tau) {
+        if (tau <= 0 || tau > .5) {
+            throw new IllegalArgumentException("Tau needs to be > 0. and <= 0.5");
+        }
+
+        this.tau = tau;
+        this.lower = null;
+        this.upper = null;
+    }
+
+    /**
+     * Sets per-label thresholds, replacing the symmetric tau (see `UncertainHammingLoss.setThresholds(…)`).
+     *
+     * @param lower lower thresholds (between 0 and 0.5)
+     * @param upper upper thresholds (between 0.5 and 1)
+     */
+    public void setThresholds(double[] lower, double[] upper) {
+        if (lower.length != upper.length) {
+            throw new IllegalArgumentException("lower and upper thresholds need to have the same length");
+        }
+
+        for (int j = 0; j < lower.length; j++) {
+            if (lower[j] < 0 || lower[j] > .5 || upper[j] < .5 || upper[j] > 1) {
+                throw new IllegalArgumentException("Thresholds need to satisfy 0 <= lower <= 0.5 <= upper <= 1");
+            }
+        }
+
+        this.lower = lower.clone();
+        this.upper = upper.clone();
+    }
+
+    public double getOmega() {
+        return omega;
+    }
+
+    public void setOmega(double omega) {
+        if (omega <= 0. || omega > 0.5) {
+            throw new IllegalArgumentException("Omega needs to be > 0. and <= 0.5");
+        }
+
+        this.omega = omega;
+    }
+
+    public List<FusedMeasure> getMeasures() {
+        return measures;
+    }
+
+    /**
+     * Updates all measures with the given predictions.
+     *
+     * @param predictions predictions to evaluate
+     */
+    public void evaluate(PredictionMatrix predictions) {
+        int numLabels = predictions.getNumLabels();
+
+        if (this.lower != null && this.lower.length != numLabels) {
+            throw new IllegalArgumentException("thresholds are set for " + this.lower.length + " labels, but "
+                    + "predictions have " + numLabels);
+        }
+
+        double[] confidences = predictions.getConfidences();
+        long[] groundTruth = predictions.getGroundTruth();
+        InstanceStatistics statistics = new InstanceStatistics();
+        statistics.numLabels = numLabels;
+        statistics.omega = this.omega;
+
+        for (int i = 0; i < predictions.getNumInstances(); i++) {
+            int offset = i * numLabels;
+            statistics.clear();
+
+            for (int j = 0; j < numLabels; j++) {
+                int k = offset + j;
+                double p = confidences[k];
+                boolean certain = this.lower == null
+                        ? p < this.tau || p > 1 - this.tau
+                        : p < this.lower[j] || p > this.upper[j];
+                boolean predicted = p >= .5;
+                boolean relevant = PredictionMatrix.getBit(groundTruth, k);
+
+                if (predicted != relevant) {
+                    statistics.errors++;
+                }
+
+                if (!certain) {
+                    statistics.uncertain++;
+                } else if (predicted && relevant) {
+                    statistics.truePositives++;
+                } else if (predicted) {
+                    statistics.falsePositives++;
+                } else if (relevant) {
+                    statistics.falseNegatives++;
+                }
+            }
+
+            statistics.certainErrors = statistics.falsePositives + statistics.falseNegatives;
+
+            for (FusedMeasure measure : this.measures) {
+                measure.update(statistics);
+            }
+        }
+    }
+
+    public void reset() {
+        for (FusedMeasure measure : this.measures) {
+            measure.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        for (FusedMeasure measure : this.measures) {
+            sb.append(measure.toString()).append("\n");
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.cs_pum.uncertain_mlc.evaluation;
+
+
+/**
+ * A measure that is computed from the `InstanceStatistics` of each instance, so that any number of them can be
+ * updated within a single pass over the predictions by `FusedEvaluator`.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-16
+ */
+public interface FusedMeasure {
+    String getName();
+
+    /**
+     * Updates the measure with the statistics of one instance.
+     *
+     * @param statistics statistics of the instance (only valid during the call)
+     */
+    void update(InstanceStatistics statistics);
+
+    double getValue();
+
+    /**
+     * Returns uncertainty component of the measure, or NaN if the measure does not consider uncertainty.
+     *
+     * @return uncertainty
+     */
+    double getUncertainty();
+
+    void reset();
+
+    FusedMeasure makeCopy();
+}
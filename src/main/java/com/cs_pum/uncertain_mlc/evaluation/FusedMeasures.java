@@ -0,0 +1,234 @@
+package com.cs_pum.uncertain_mlc.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Measures computed by `FusedEvaluator`. All of them are means of instance-wise losses, which are derived from
+ * the `InstanceStatistics` in O(1), so adding a measure does not add another pass over the predictions.
+ *
+ * Besides the hamming and subset 0/1 loss and the uncertain hamming loss, two uncertainty-aware variants are
+ * provided:
+ *
+ * - the uncertain subset 0/1 loss is 1 if any certain label is wrong, `omega` if no certain label is wrong but
+ *   at least one label is uncertain, and 0 otherwise.
+ * - the uncertain F1 loss is `1 - 2 TP / (2 TP + FP + FN + omega * U)`, where the true/false positives and
+ *   false negatives are counted over the certain labels and `U` is the number of uncertain labels. Instances
+ *   without any relevant, predicted or uncertain label have a loss of 0.
+ *
+ * The uncertainty component of a measure is the part of its value that is due to uncertain labels.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-16
+ */
+public final class FusedMeasures {
+    private FusedMeasures() {}
+
+    /**
+     * @return one instance of each of the measures
+     */
+    public static List<FusedMeasure> all() {
+        List<FusedMeasure> measures = new ArrayList<>();
+        measures.add(new HammingLoss());
+        measures.add(new UncertainHammingLoss());
+        measures.add(new SubsetZeroOneLoss());
+        measures.add(new UncertainSubsetZeroOneLoss());
+        measures.add(new UncertainF1Loss());
+
+        return measures;
+    }
+
+    /**
+     * Base class of measures that are the mean of an instance-wise loss.
+     */
+    public abstract static class MeanLoss implements FusedMeasure {
+        private double accum = 0;
+        private double uncertainty = 0;
+        private double calls = 0;
+
+        protected abstract double computeLoss(InstanceStatistics statistics);
+
+        /**
+         * @return new, empty instance of the measure, the copies made by `makeCopy()` are based on
+         */
+        protected abstract MeanLoss newInstance();
+
+        /**
+         * Returns the part of the instance-wise loss that is due to uncertain labels (0 for measures that do not
+         * consider uncertainty).
+         */
+        protected double computeUncertainty(InstanceStatistics statistics) {
+            return 0;
+        }
+
+        protected boolean considersUncertainty() {
+            return true;
+        }
+
+        @Override
+        public void update(InstanceStatistics statistics) {
+            this.accum += this.computeLoss(statistics);
+            this.uncertainty += this.computeUncertainty(statistics);
+            this.calls++;
+        }
+
+        @Override
+        public double getValue() {
+            return this.accum / this.calls;
+        }
+
+        @Override
+        public double getUncertainty() {
+            return this.considersUncertainty() ? this.uncertainty / this.calls : Double.NaN;
+        }
+
+        @Override
+        public void reset() {
+            this.accum = 0;
+            this.uncertainty = 0;
+            this.calls = 0;
+        }
+
+        @Override
+        public FusedMeasure makeCopy() {
+            MeanLoss copy = this.newInstance();
+            copy.accum = this.accum;
+            copy.uncertainty = this.uncertainty;
+            copy.calls = this.calls;
+
+            return copy;
+        }
+
+        @Override
+        public String toString() {
+            return this.getName() + ": " + String.format("%.4f", this.getValue());
+        }
+    }
+
+    public static class HammingLoss extends MeanLoss {
+        @Override
+        protected MeanLoss newInstance() {
+            return new HammingLoss();
+        }
+
+        @Override
+        public String getName() {
+            return "Hamming Loss";
+        }
+
+        @Override
+        protected double computeLoss(InstanceStatistics statistics) {
+            return (double) statistics.getErrors() / statistics.getNumLabels();
+        }
+
+        @Override
+        protected boolean considersUncertainty() {
+            return false;
+        }
+    }
+
+    public static class UncertainHammingLoss extends MeanLoss {
+        @Override
+        protected MeanLoss newInstance() {
+            return new UncertainHammingLoss();
+        }
+
+        @Override
+        public String getName() {
+            return "Uncertain Hamming Loss";
+        }
+
+        @Override
+        protected double computeLoss(InstanceStatistics statistics) {
+            return (statistics.getCertainErrors() + statistics.getUncertain() * statistics.getOmega())
+                    / statistics.getNumLabels();
+        }
+
+        @Override
+        protected double computeUncertainty(InstanceStatistics statistics) {
+            return statistics.getUncertain() * statistics.getOmega() / statistics.getNumLabels();
+        }
+    }
+
+    public static class SubsetZeroOneLoss extends MeanLoss {
+        @Override
+        protected MeanLoss newInstance() {
+            return new SubsetZeroOneLoss();
+        }
+
+        @Override
+        public String getName() {
+            return "Subset 0/1 Loss";
+        }
+
+        @Override
+        protected double computeLoss(InstanceStatistics statistics) {
+            return statistics.getErrors() > 0 ? 1 : 0;
+        }
+
+        @Override
+        protected boolean considersUncertainty() {
+            return false;
+        }
+    }
+
+    public static class UncertainSubsetZeroOneLoss extends MeanLoss {
+        @Override
+        protected MeanLoss newInstance() {
+            return new UncertainSubsetZeroOneLoss();
+        }
+
+        @Override
+        public String getName() {
+            return "Uncertain Subset 0/1 Loss";
+        }
+
+        @Override
+        protected double computeLoss(InstanceStatistics statistics) {
+            if (statistics.getCertainErrors() > 0) {
+                return 1;
+            }
+
+            return statistics.getUncertain() > 0 ? statistics.getOmega() : 0;
+        }
+
+        @Override
+        protected double computeUncertainty(InstanceStatistics statistics) {
+            return statistics.getCertainErrors() == 0 && statistics.getUncertain() > 0 ? statistics.getOmega() : 0;
+        }
+    }
+
+    public static class UncertainF1Loss extends MeanLoss {
+        @Override
+        protected MeanLoss newInstance() {
+            return new UncertainF1Loss();
+        }
+
+        @Override
+        public String getName() {
+            return "Uncertain F1 Loss";
+        }
+
+        private static double f1(double truePositives, double denominator) {
+            return denominator == 0 ? 1 : 2 * truePositives / denominator;
+        }
+
+        @Override
+        protected double computeLoss(InstanceStatistics statistics) {
+            int tp = statistics.getTruePositives();
+            double denominator = 2 * tp + statistics.getFalsePositives() + statistics.getFalseNegatives()
+                    + statistics.getOmega() * statistics.getUncertain();
+
+            return 1 - f1(tp, denominator);
+        }
+
+        @Override
+        protected double computeUncertainty(InstanceStatistics statistics) {
+            int tp = statistics.getTruePositives();
+            double certainDenominator = 2 * tp + statistics.getFalsePositives() + statistics.getFalseNegatives();
+
+            return f1(tp, certainDenominator) - (1 - this.computeLoss(statistics));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.cs_pum.uncertain_mlc.evaluation;
+
+
+/**
+ * Label counts of a single instance, computed once per instance by `FusedEvaluator` and shared by all
+ * `FusedMeasure`s. The bipartition is induced by the threshold 1/2, a label is certain if its confidence lies
+ * outside of the uncertainty interval. The same object is reused for every instance of a pass.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-16
+ */
+public class InstanceStatistics {
+    int numLabels;
+    int errors;
+    int certainErrors;
+    int uncertain;
+    int truePositives;
+    int falsePositives;
+    int falseNegatives;
+    double omega;
+
+    void clear() {
+        this.errors = 0;
+        this.certainErrors = 0;
+        this.uncertain = 0;
+        this.truePositives = 0;
+        this.falsePositives = 0;
+        this.falseNegatives = 0;
+    }
+
+    public int getNumLabels() {
+        return numLabels;
+    }
+
+    /**
+     * @return number of labels where the bipartition differs from the ground truth, regardless of uncertainty
+     */
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return number of certain labels where the bipartition differs from the ground truth
+     */
+    public int getCertainErrors() {
+        return certainErrors;
+    }
+
+    /**
+     * @return number of uncertain labels
+     */
+    public int getUncertain() {
+        return uncertain;
+    }
+
+    /**
+     * @return number of certain labels predicted relevant that are relevant
+     */
+    public int getTruePositives() {
+        return truePositives;
+    }
+
+    /**
+     * @return number of certain labels predicted relevant that are irrelevant
+     */
+    public int getFalsePositives() {
+        return falsePositives;
+    }
+
+    /**
+     * @return number of certain labels predicted irrelevant that are relevant
+     */
+    public int getFalseNegatives() {
+        return falseNegatives;
+    }
+
+    /**
+     * @return weight of an uncertain label
+     */
+    public double getOmega() {
+        return omega;
+    }
+}
@@ -0,0 +1,290 @@
+package com.cs_pum.uncertain_mlc.evaluation;
+
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+import com.cs_pum.uncertain_mlc.optimization.TauSearchResult;
+import com.cs_pum.uncertain_mlc.optimization.UncertaintyMarginSweep;
+import mulan.classifier.MultiLabelLearner;
+import mulan.data.MultiLabelInstances;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Nested cross-validation of the uncertain hamming loss, so that the tau a fold is evaluated at is not
+ * optimized on the predictions of that very fold.
+ *
+ * The data are split into `K` partitions. For outer fold `i`, a model trained on all partitions but `i` predicts
+ * partition `i`, and the tau is optimized (exactly, see `UncertaintyMarginSweep`) on inner predictions only: the
+ * inner folds are the remaining partitions `j != i`, each predicted by a model trained on all partitions but
+ * `i` and `j`. That training set is the same for the pair `(i, j)` and `(j, i)`, so one model per pair predicts
+ * both partitions and serves the inner folds of both outer folds. This takes `K + K(K - 1) / 2` models instead of
+ * the `K + K(K - 1)` of the naive nested loop, e.g. 6 instead of 9 for three folds. The outer models are those of
+ * a plain `K`-fold cross-validation on the same partitions (`trainCV`/`testCV`), so if its predictions are passed
+ * in, only the `K(K - 1) / 2` pair models are trained.
+ *
+ * All models are trained and evaluated as independent tasks on an executor with a bounded number of threads.
+ * Tau selection and the evaluation of the outer folds only take a pass over the predictions each and happen
+ * once all tasks are done, so the result does not depend on the scheduling.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-21
+ */
+public class NestedCrossValidation {
+    private final MultiLabelLearner learner;
+    private final int numFolds;
+    private final double omega;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param learner learner to copy for every model
+     * @param numFolds number of partitions (>= 3, the inner folds are the `numFolds - 1` remaining ones)
+     * @param omega weight of an uncertain prediction
+     */
+    public NestedCrossValidation(MultiLabelLearner learner, int numFolds, double omega) {
+        if (numFolds < 3) {
+            throw new IllegalArgumentException("number of folds needs to be >= 3");
+        }
+
+        this.learner = learner;
+        this.numFolds = numFolds;
+        this.omega = omega;
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * @param numThreads maximum number of models trained at the same time
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("number of threads needs to be >= 1");
+        }
+
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * @return number of models trained per run without predictions of the outer folds passed in
+     */
+    public int getNumModels() {
+        return this.numFolds + this.numFolds * (this.numFolds - 1) / 2;
+    }
+
+    /**
+     * Runs the nested cross-validation on a fixed thread pool of `getNumThreads()` threads.
+     *
+     * @param data data to partition (in their current order, shuffle before if necessary)
+     * @return selected tau and measures per outer fold
+     * @throws Exception if a model can not be trained or fails to predict
+     */
+    public NestedCrossValidationResult run(MultiLabelInstances data) throws Exception {
+        return this.run(data, new PredictionMatrix[this.numFolds]);
+    }
+
+    /**
+     * Runs the nested cross-validation with the predictions of the outer folds computed before (see
+     * `run(MultiLabelInstances, ExecutorService, PredictionMatrix[])`) on a fixed thread pool of `getNumThreads()`
+     * threads.
+     */
+    public NestedCrossValidationResult run(MultiLabelInstances data, PredictionMatrix[] outerPredictions)
+            throws Exception {
+        int numModels = this.numFolds * (this.numFolds - 1) / 2;
+
+        for (PredictionMatrix predictions : outerPredictions) {
+            numModels += predictions == null ? 1 : 0;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.numThreads, numModels));
+
+        try {
+            return this.run(data, executor, outerPredictions);
+        } finally {
+            // all tasks are done on success, on failure the pending ones are cancelled
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the nested cross-validation with all models trained on the given executor, which is not shut down.
+     *
+     * @param data data to partition (in their current order, shuffle before if necessary)
+     * @param executor executor to train the models on
+     * @return selected tau and measures per outer fold
+     * @throws Exception if a model can not be trained or fails to predict
+     */
+    public NestedCrossValidationResult run(MultiLabelInstances data, ExecutorService executor) throws Exception {
+        return this.run(data, executor, new PredictionMatrix[this.numFolds]);
+    }
+
+    /**
+     * Runs the nested cross-validation with the predictions of the outer folds computed before, e.g. by a plain
+     * cross-validation of the same learner on the same data, and the remaining models trained on the given
+     * executor, which is not shut down.
+     *
+     * @param data data to partition (in their current order, shuffle before if necessary)
+     * @param executor executor to train the models on
+     * @param outerPredictions predictions of partition `i` by a model trained on all other partitions (see
+     *                         `Instances.trainCV`) per outer fold `i`, or null for the outer folds whose model is
+     *                         to be trained
+     * @return selected tau and measures per outer fold
+     * @throws Exception if a model can not be trained or fails to predict
+     */
+    public NestedCrossValidationResult run(MultiLabelInstances data, ExecutorService executor,
+                                           PredictionMatrix[] outerPredictions) throws Exception {
+        if (outerPredictions.length != this.numFolds) {
+            throw new IllegalArgumentException("predictions of " + this.numFolds + " outer folds expected");
+        }
+
+        Instances dataSet = data.getDataSet();
+        Instances[] partitions = new Instances[this.numFolds];
+
+        for (int f = 0; f < this.numFolds; f++) {
+            partitions[f] = dataSet.testCV(this.numFolds, f);
+        }
+
+        // outer[i] predicts partition i, pairs[i][j] (i < j) predicts partitions i and j
+        List<Future<Predictions[]>> outer = new ArrayList<>();
+        List<List<Future<Predictions[]>>> pairs = new ArrayList<>();
+        int numModels = 0;
+
+        for (int i = 0; i < this.numFolds; i++) {
+            if (outerPredictions[i] == null) {
+                outer.add(executor.submit(this.task(data, partitions, new int[]{i})));
+                numModels++;
+            } else {
+                outer.add(null);
+            }
+
+            List<Future<Predictions[]>> row = new ArrayList<>();
+
+            for (int j = i + 1; j < this.numFolds; j++) {
+                row.add(executor.submit(this.task(data, partitions, new int[]{i, j})));
+                numModels++;
+            }
+
+            pairs.add(row);
+        }
+
+        double[] taus = new double[this.numFolds];
+        double[] innerLosses = new double[this.numFolds];
+        List<List<FusedMeasure>> measures = new ArrayList<>();
+
+        for (int i = 0; i < this.numFolds; i++) {
+            List<double[]> innerConfidences = new ArrayList<>();
+            List<double[]> innerGroundTruth = new ArrayList<>();
+
+            for (int j = 0; j < this.numFolds; j++) {
+                if (j == i) {
+                    continue;
+                }
+
+                // the pair model of i and j has not seen partition j, which is its second prediction iff i < j
+                Predictions inner = i < j
+                        ? get(pairs.get(i).get(j - i - 1))[1]
+                        : get(pairs.get(j).get(i - j - 1))[0];
+                innerConfidences.addAll(inner.confidences);
+                innerGroundTruth.addAll(inner.groundTruth);
+            }
+
+            UncertaintyMarginSweep sweep = new UncertaintyMarginSweep(innerConfidences, innerGroundTruth);
+            TauSearchResult selection = sweep.sweep(this.omega);
+            taus[i] = selection.getOptimalTau();
+            innerLosses[i] = selection.getOptimalLoss();
+
+            PredictionMatrix test = outerPredictions[i];
+
+            if (test == null) {
+                Predictions predictions = get(outer.get(i))[0];
+                test = PredictionMatrix.fromLists(predictions.confidences, predictions.groundTruth);
+            }
+
+            FusedEvaluator evaluator = new FusedEvaluator(taus[i], this.omega);
+            evaluator.evaluate(test);
+            measures.add(evaluator.getMeasures());
+        }
+
+        return new NestedCrossValidationResult(taus, innerLosses, measures, numModels);
+    }
+
+    /**
+     * Creates the task that trains a model on all partitions but `heldOut`, and predicts each of them.
+     */
+    private Callable<Predictions[]> task(MultiLabelInstances data, Instances[] partitions, int[] heldOut) {
+        return () -> {
+            Instances train = new Instances(partitions[0], 0);
+
+            for (int f = 0; f < partitions.length; f++) {
+                if (!contains(heldOut, f)) {
+                    for (int k = 0; k < partitions[f].numInstances(); k++) {
+                        train.add(partitions[f].instance(k));
+                    }
+                }
+            }
+
+            MultiLabelLearner model = this.learner.makeCopy();
+            model.build(new MultiLabelInstances(train, data.getLabelsMetaData()));
+
+            int[] labelIndices = data.getLabelIndices();
+            Predictions[] predictions = new Predictions[heldOut.length];
+
+            for (int h = 0; h < heldOut.length; h++) {
+                Instances test = partitions[heldOut[h]];
+                predictions[h] = new Predictions();
+
+                for (int k = 0; k < test.numInstances(); k++) {
+                    Instance instance = test.instance(k);
+                    double[] groundTruth = new double[labelIndices.length];
+
+                    for (int l = 0; l < labelIndices.length; l++) {
+                        groundTruth[l] = instance.value(labelIndices[l]);
+                    }
+
+                    predictions[h].confidences.add(model.makePrediction(instance).getConfidences());
+                    predictions[h].groundTruth.add(groundTruth);
+                }
+            }
+
+            return predictions;
+        };
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static Predictions[] get(Future<Predictions[]> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Predictions of one model on one partition.
+     */
+    private static class Predictions {
+        final List<double[]> confidences = new ArrayList<>();
+        final List<double[]> groundTruth = new ArrayList<>();
+    }
+}
@@ -0,0 +1,139 @@
+package com.cs_pum.uncertain_mlc.evaluation;
+
+import java.util.List;
+
+
+/**
+ * Result of a `NestedCrossValidation`: per outer fold the tau selected on the inner folds, the optimal loss on the
+ * inner folds, and the measures on the outer test fold at the selected tau.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-21
+ */
+public class NestedCrossValidationResult {
+    private final double[] taus;
+    private final double[] innerLosses;
+    private final List<List<FusedMeasure>> measures;
+    private final int numModels;
+
+    /**
+     * @param taus selected tau per outer fold
+     * @param innerLosses optimal loss on the inner folds per outer fold
+     * @param measures evaluated measures per outer fold, in the same order for every fold
+     * @param numModels number of models trained
+     */
+    public NestedCrossValidationResult(double[] taus, double[] innerLosses, List<List<FusedMeasure>> measures,
+                                       int numModels) {
+        this.taus = taus;
+        this.innerLosses = innerLosses;
+        this.measures = measures;
+        this.numModels = numModels;
+    }
+
+    public int getNumFolds() {
+        return this.taus.length;
+    }
+
+    public int getNumModels() {
+        return this.numModels;
+    }
+
+    public double[] getTaus() {
+        return this.taus;
+    }
+
+    public double[] getInnerLosses() {
+        return this.innerLosses;
+    }
+
+    /**
+     * @param fold outer fold
+     * @return measures on the test predictions of the fold, at its selected tau
+     */
+    public List<FusedMeasure> getMeasures(int fold) {
+        return this.measures.get(fold);
+    }
+
+    /**
+     * @param name name of the measure
+     * @return value of the measure per outer fold
+     */
+    public double[] getValues(String name) {
+        double[] values = new double[this.getNumFolds()];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = find(this.measures.get(i), name).getValue();
+        }
+
+        return values;
+    }
+
+    /**
+     * @param name name of the measure
+     * @return uncertainty component of the measure per outer fold (NaN if it does not consider uncertainty)
+     */
+    public double[] getUncertainties(String name) {
+        double[] values = new double[this.getNumFolds()];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = find(this.measures.get(i), name).getUncertainty();
+        }
+
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("tau: %.4f+-%.4f (%d models)\n", mean(this.taus), sd(this.taus), this.numModels));
+
+        for (FusedMeasure measure : this.measures.get(0)) {
+            double[] values = this.getValues(measure.getName());
+            sb.append(String.format("%s: %.4f+-%.4f", measure.getName(), mean(values), sd(values)));
+
+            double[] uncertainties = this.getUncertainties(measure.getName());
+
+            if (!Double.isNaN(uncertainties[0])) {
+                sb.append(String.format(" (uncertainty: %.4f+-%.4f)", mean(uncertainties), sd(uncertainties)));
+            }
+
+            sb.append("\n");
+        }
+
+        return sb.toString();
+    }
+
+    private static FusedMeasure find(List<FusedMeasure> measures, String name) {
+        for (FusedMeasure measure : measures) {
+            if (measure.getName().equals(name)) {
+                return measure;
+            }
+        }
+
+        throw new IllegalArgumentException("no measure named " + name);
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+
+        for (double v : values) {
+            sum += v;
+        }
+
+        return sum / values.length;
+    }
+
+    /**
+     * Sample standard deviation, as reported by the experiments.
+     */
+    private static double sd(double[] values) {
+        double mean = mean(values);
+        double sum = 0;
+
+        for (double v : values) {
+            sum += (v - mean) * (v - mean);
+        }
+
+        return Math.sqrt(sum / (values.length - 1));
+    }
+}
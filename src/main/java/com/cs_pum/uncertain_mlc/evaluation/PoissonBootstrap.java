@@ -0,0 +1,250 @@
+package com.cs_pum.uncertain_mlc.evaluation;
+
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+import com.cs_pum.uncertain_mlc.optimization.UncertaintyMarginSweep;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+
+/**
+ * Poisson bootstrap of the uncertain hamming loss, its uncertainty component and the optimal tau.
+ *
+ * Instead of drawing resampled copies of the predictions, every instance gets an independent Poisson(1) weight
+ * per replicate, which approximates the multinomial counts of the classic bootstrap for large samples. The
+ * replicates are thus evaluated on the predictions as they are, without materializing any copies: the weighted
+ * counts of wrongly predicted and uncertain labels give the loss at the given tau, and a weighted sweep over the
+ * critical taus of the labels gives the optimal tau exactly, the same way `UncertaintyMarginSweep` does for the
+ * original data. The critical taus are sorted once, so a replicate only takes a pass over the predictions and
+ * over the distinct critical taus. A replicate in which all weights are zero is drawn again.
+ *
+ * Replicates are split into groups which are evaluated in parallel on the common fork-join pool. Each replicate
+ * draws from its own generator split off a seeded one, so the result does not depend on the number of threads.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-18
+ */
+public class PoissonBootstrap {
+    /* number of replicates evaluated by a single task */
+    private static final int REPLICATES_PER_TASK = 16;
+    private static final double EXP_MINUS_ONE = Math.exp(-1);
+
+    private final int numReplicates;
+    private final long seed;
+
+    /**
+     * @param numReplicates number of bootstrap replicates
+     * @param seed seed of the random weights
+     */
+    public PoissonBootstrap(int numReplicates, long seed) {
+        if (numReplicates < 2) {
+            throw new IllegalArgumentException("number of replicates needs to be >= 2");
+        }
+
+        this.numReplicates = numReplicates;
+        this.seed = seed;
+    }
+
+    /**
+     * Bootstraps the loss and its uncertainty component at `tau`, and the optimal tau.
+     *
+     * @param predictions predictions to resample
+     * @param tau threshold of the uncertainty interval the loss is evaluated at
+     * @param omega weight of an uncertain prediction
+     * @return replicates and estimates on the original data
+     */
+    public BootstrapResult run(PredictionMatrix predictions, double tau, double omega) {
+        int numLabels = predictions.getNumLabels();
+        int numInstances = predictions.getNumInstances();
+
+        if (numInstances == 0) {
+            throw new IllegalArgumentException("predictions are empty");
+        }
+
+        // classify each label once, the replicates only weigh the counts of the instances differently
+        int[] errors = new int[numInstances];
+        int[] uncertain = new int[numInstances];
+        double[] confidences = predictions.getConfidences();
+        long[] groundTruth = predictions.getGroundTruth();
+        long totalErrors = 0;
+        long totalUncertain = 0;
+
+        for (int i = 0; i < numInstances; i++) {
+            for (int k = i * numLabels; k < (i + 1) * numLabels; k++) {
+                double p = confidences[k];
+
+                if (p < tau || p > 1 - tau) {
+                    if ((p >= .5) != PredictionMatrix.getBit(groundTruth, k)) {
+                        errors[i]++;
+                    }
+                } else {
+                    uncertain[i]++;
+                }
+            }
+
+            totalErrors += errors[i];
+            totalUncertain += uncertain[i];
+        }
+
+        // rank of the critical tau of each label among the distinct critical taus
+        int numValues = numInstances * numLabels;
+        double[] criticalTaus = new double[numValues];
+
+        for (int k = 0; k < numValues; k++) {
+            criticalTaus[k] = UncertaintyMarginSweep.criticalTau(confidences[k]);
+        }
+
+        double[] distinct = criticalTaus.clone();
+        Arrays.sort(distinct);
+        int numDistinct = 0;
+
+        for (int d = 0; d < distinct.length; d++) {
+            if (d == 0 || distinct[d] != distinct[numDistinct - 1]) {
+                distinct[numDistinct++] = distinct[d];
+            }
+        }
+
+        double[] values = Arrays.copyOf(distinct, numDistinct);
+        int[] ranks = new int[numValues];
+
+        for (int k = 0; k < numValues; k++) {
+            ranks[k] = Arrays.binarySearch(values, criticalTaus[k]);
+        }
+
+        SplittableRandom base = new SplittableRandom(this.seed);
+        SplittableRandom[] generators = new SplittableRandom[this.numReplicates];
+
+        for (int b = 0; b < this.numReplicates; b++) {
+            generators[b] = base.split();
+        }
+
+        double[] losses = new double[this.numReplicates];
+        double[] uncertainties = new double[this.numReplicates];
+        double[] optimalTaus = new double[this.numReplicates];
+        int numTasks = (this.numReplicates + REPLICATES_PER_TASK - 1) / REPLICATES_PER_TASK;
+
+        IntStream.range(0, numTasks).parallel().forEach(task -> {
+            int from = task * REPLICATES_PER_TASK;
+            int to = Math.min(this.numReplicates, from + REPLICATES_PER_TASK);
+            int[] weights = new int[numInstances];
+            long[] errorWeights = new long[values.length];
+            long[] correctWeights = new long[values.length];
+
+            for (int r = from; r < to; r++) {
+                long totalWeight = 0;
+
+                while (totalWeight == 0) {
+                    for (int i = 0; i < numInstances; i++) {
+                        weights[i] = poisson(generators[r]);
+                        totalWeight += weights[i];
+                    }
+                }
+
+                long weightedErrors = 0;
+                long weightedUncertain = 0;
+                Arrays.fill(errorWeights, 0);
+                Arrays.fill(correctWeights, 0);
+
+                for (int i = 0; i < numInstances; i++) {
+                    int w = weights[i];
+
+                    if (w == 0) {
+                        continue;
+                    }
+
+                    weightedErrors += (long) w * errors[i];
+                    weightedUncertain += (long) w * uncertain[i];
+
+                    for (int k = i * numLabels; k < (i + 1) * numLabels; k++) {
+                        if ((confidences[k] >= .5) != PredictionMatrix.getBit(groundTruth, k)) {
+                            errorWeights[ranks[k]] += w;
+                        } else {
+                            correctWeights[ranks[k]] += w;
+                        }
+                    }
+                }
+
+                double labels = (double) totalWeight * numLabels;
+
+                losses[r] = (weightedErrors + omega * weightedUncertain) / labels;
+                uncertainties[r] = omega * weightedUncertain / labels;
+                optimalTaus[r] = optimalTau(values, errorWeights, correctWeights, totalWeight * numLabels, omega);
+            }
+        });
+
+        double labels = (double) numInstances * numLabels;
+
+        return new BootstrapResult(losses, uncertainties, optimalTaus,
+                (totalErrors + omega * totalUncertain) / labels, omega * totalUncertain / labels,
+                new UncertaintyMarginSweep(predictions).sweep(omega).getOptimalTau());
+    }
+
+    /**
+     * Weighted counterpart of `UncertaintyMarginSweep.sweep(…)`: finds the first (smallest) midpoint of the
+     * intervals between consecutive critical taus that attains the minimal loss.
+     *
+     * @param values sorted distinct critical taus
+     * @param errorWeights weight of the mispredicted labels per critical tau
+     * @param correctWeights weight of the correctly predicted labels per critical tau
+     * @param total weight of all labels
+     * @param omega weight of an uncertain prediction
+     * @return optimal tau
+     */
+    private static double optimalTau(double[] values, long[] errorWeights, long[] correctWeights, long total,
+                                     double omega) {
+        // labels with a critical value of (at most) zero are certain for every tau > 0
+        long errors = 0;
+        long correct = 0;
+        int d = 0;
+
+        while (d < values.length && values[d] <= 0) {
+            errors += errorWeights[d];
+            correct += correctWeights[d];
+            d++;
+        }
+
+        double lower = 0;
+        double optLoss = Double.POSITIVE_INFINITY;
+        double optTau = .5;
+
+        while (lower < .5) {
+            double upper = d < values.length ? Math.min(.5, values[d]) : .5;
+            double loss = (errors + omega * (total - errors - correct)) / total;
+
+            if (loss < optLoss) {
+                double tau = (lower + upper) / 2;
+
+                optLoss = loss;
+                // for adjacent doubles the midpoint might round onto the (excluded) lower bound
+                optTau = tau > lower ? tau : upper;
+            }
+
+            while (d < values.length && values[d] <= upper) {
+                errors += errorWeights[d];
+                correct += correctWeights[d];
+                d++;
+            }
+
+            lower = upper;
+        }
+
+        return optTau;
+    }
+
+    /**
+     * Draws from Poisson(1) by multiplying uniform numbers until the product drops below 1 / e (two draws on
+     * average).
+     */
+    private static int poisson(SplittableRandom random) {
+        int k = 0;
+        double product = random.nextDouble();
+
+        while (product > EXP_MINUS_ONE) {
+            k++;
+            product *= random.nextDouble();
+        }
+
+        return k;
+    }
+}
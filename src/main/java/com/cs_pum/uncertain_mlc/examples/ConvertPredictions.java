@@ -0,0 +1,81 @@
+package com.cs_pum.uncertain_mlc.examples;
+
+import com.cs_pum.uncertain_mlc.io.PredictionCSVReader;
+import com.cs_pum.uncertain_mlc.io.PredictionStore;
+import com.cs_pum.uncertain_mlc.io.PredictionStoreWriter;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.DecimalFormat;
+
+
+/**
+ * Converts prediction files between the binary format written by the experiments (`PredictionStoreWriter`)
+ * and the CSV format used before (`pred_*` columns, `fold`, ground truth columns). The direction is derived
+ * from the file extension of the input: `.bin` files are exported to CSV, anything else is read as CSV and
+ * converted to the binary format.
+ *
+ * Usage: `ConvertPredictions <input> <output>`, e.g.
+ * `ConvertPredictions results/predictions-yeast.bin results/predictions-yeast.csv`
+ */
+public class ConvertPredictions {
+    public static void toCSV(String binFile, String csvFile) throws IOException {
+        DecimalFormat formatter = new DecimalFormat("#.########");
+
+        try (PredictionStore store = new PredictionStore(binFile);
+             BufferedWriter out = new BufferedWriter(new FileWriter(csvFile))) {
+            String[] labelNames = store.getLabelNames();
+            StringBuilder line = new StringBuilder();
+
+            for (String name : labelNames) {
+                line.append("pred_").append(name).append(',');
+            }
+
+            line.append("fold,").append(String.join(",", labelNames)).append('\n');
+            out.write(line.toString());
+
+            for (int i = 0; i < store.getNumRows(); i++) {
+                line.setLength(0);
+
+                for (int j = 0; j < store.getNumLabels(); j++) {
+                    line.append(formatter.format(store.getConfidence(i, j))).append(',');
+                }
+
+                line.append(store.getFold(i)).append(',');
+
+                for (int j = 0; j < store.getNumLabels(); j++) {
+                    line.append(store.isRelevant(i, j) ? "1.0" : "0.0");
+
+                    if (j < store.getNumLabels() - 1) {
+                        line.append(',');
+                    }
+                }
+
+                line.append('\n');
+                out.write(line.toString());
+            }
+        }
+    }
+
+    public static void toBinary(String csvFile, String binFile) throws IOException {
+        PredictionCSVReader reader = new PredictionCSVReader(csvFile);
+
+        try (PredictionStoreWriter writer = new PredictionStoreWriter(binFile, reader.getLabelNames())) {
+            reader.stream(writer::write);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("usage: ConvertPredictions <input> <output>");
+            return;
+        }
+
+        if (args[0].endsWith(".bin")) {
+            toCSV(args[0], args[1]);
+        } else {
+            toBinary(args[0], args[1]);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.cs_pum.uncertain_mlc.examples;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Runs the data sets of an experiment concurrently within a heap and a core budget.
+ *
+ * The heap needed by a data set is estimated from its ARFF file before it is loaded: the header gives the number
+ * of attributes and whether rows are sparse, a sample of rows their average length and number of values, and the
+ * file size the number of instances. The parsed data are held once, and once more per model trained at the same
+ * time for its training and test split and the copy the base learner trains on; the models add one coefficient
+ * vector per label each.
+ *
+ * Every data set claims a number of cores (`setThreadsPerDataset(…)`), and runs on a pool of exactly that many
+ * threads, which it is expected to train all of its models on (folds and nested cross-validation alike). The
+ * number of models trained at the same time, and thus the cores and the heap used, is bounded by that pool.
+ *
+ * Data sets are started largest first, so that the long-running ones do not end up in the tail. A data set is
+ * started as soon as its estimate fits into what is left of both budgets, smaller data sets fill in while a larger
+ * one has to wait. A data set that exceeds the budgets on its own is started once nothing else is running. The
+ * output of each data set is collected and printed in one piece once it is done, so that the output of data sets
+ * running at the same time is not interleaved. At the end, the wall time of each data set is reported.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-27
+ */
+public class DatasetScheduler {
+    private static final int SAMPLE_ROWS = 100;
+
+    /**
+     * Runs the experiment for one data set, printing its results to `out`, and training its models on `executor`,
+     * a pool of as many threads as cores are claimed by the data set.
+     */
+    public interface DatasetRun {
+        void run(String dataset, PrintStream out, ExecutorService executor) throws Exception;
+    }
+
+    private static class Entry {
+        final String dataset;
+        final long memory;
+        final int cores;
+        long wallTime = -1;
+
+        Entry(String dataset, long memory, int cores) {
+            this.dataset = dataset;
+            this.memory = memory;
+            this.cores = cores;
+        }
+    }
+
+    private final long heapBudget;
+    private final int coreBudget;
+    private int threadsPerDataset = 3;
+    private final List<Entry> entries = new ArrayList<>();
+    private long usedHeap = 0;
+    private int usedCores = 0;
+    private int running = 0;
+
+    /**
+     * @param heapBudget bytes of heap the running data sets may use in total
+     * @param coreBudget number of cores the running data sets may use in total
+     */
+    public DatasetScheduler(long heapBudget, int coreBudget) {
+        if (heapBudget <= 0 || coreBudget <= 0) {
+            throw new IllegalArgumentException("budgets need to be > 0");
+        }
+
+        this.heapBudget = heapBudget;
+        this.coreBudget = coreBudget;
+    }
+
+    /**
+     * @param threadsPerDataset number of models of a data set trained at the same time, i.e. the number of cores
+     *                          claimed (default: 3, one per fold), for the data sets added afterwards
+     */
+    public void setThreadsPerDataset(int threadsPerDataset) {
+        if (threadsPerDataset < 1) {
+            throw new IllegalArgumentException("number of threads needs to be >= 1");
+        }
+
+        this.threadsPerDataset = threadsPerDataset;
+    }
+
+    /**
+     * Adds a data set to run, with its heap estimated from its file.
+     *
+     * @param dataset name of the data set
+     * @param arffFile file of the data set
+     * @param numLabels number of labels of the data set
+     * @throws IOException if the file can not be read
+     */
+    public void add(String dataset, File arffFile, int numLabels) throws IOException {
+        this.entries.add(new Entry(dataset, this.estimateMemory(arffFile, numLabels), this.getCoresPerDataset()));
+    }
+
+    private int getCoresPerDataset() {
+        return Math.min(this.threadsPerDataset, this.coreBudget);
+    }
+
+    /**
+     * Estimates the heap needed to run the experiment on a data set (see the class description).
+     *
+     * @param arffFile file of the data set
+     * @param numLabels number of labels of the data set
+     * @return estimate in bytes
+     * @throws IOException if the file can not be read
+     */
+    public long estimateMemory(File arffFile, int numLabels) throws IOException {
+        int numAttributes = 0;
+        long headerBytes = 0;
+        long sampleBytes = 0;
+        long sampleValues = 0;
+        int sampleRows = 0;
+        boolean sparse = false;
+
+        try (BufferedReader in = new BufferedReader(new FileReader(arffFile))) {
+            String line;
+
+            while ((line = in.readLine()) != null) {
+                headerBytes += line.length() + 1;
+                String keyword = line.trim().toLowerCase(Locale.ROOT);
+
+                if (keyword.startsWith("@attribute")) {
+                    numAttributes++;
+                } else if (keyword.startsWith("@data")) {
+                    break;
+                }
+            }
+
+            while (sampleRows < SAMPLE_ROWS && (line = in.readLine()) != null) {
+                String row = line.trim();
+
+                if (row.isEmpty() || row.charAt(0) == '%') {
+                    continue;
+                }
+
+                sparse = row.charAt(0) == '{';
+                sampleBytes += line.length() + 1;
+                sampleValues += row.chars().filter(c -> c == ',').count() + 1;
+                sampleRows++;
+            }
+        }
+
+        if (sampleRows == 0) {
+            return 0;
+        }
+
+        long numInstances = (arffFile.length() - headerBytes) * sampleRows / Math.max(sampleBytes, 1);
+        // dense instances hold a double per attribute, sparse ones a double and an int per stored value
+        long bytesPerInstance = sparse ? 12 * sampleValues / sampleRows + 64 : 8L * numAttributes + 48;
+        long data = numInstances * bytesPerInstance;
+        // at most one model per thread of the pool of the data set is trained at the same time
+        int concurrentModels = this.getCoresPerDataset();
+        long models = 8L * numLabels * numAttributes * concurrentModels;
+
+        return data * (1 + 2 * concurrentModels) + models;
+    }
+
+    private boolean fits(Entry entry) {
+        return this.usedHeap + entry.memory <= this.heapBudget && this.usedCores + entry.cores <= this.coreBudget;
+    }
+
+    /**
+     * Runs all data sets and prints their wall time.
+     *
+     * @param run experiment to run for every data set
+     * @return wall time per data set in nanoseconds (-1 for data sets that failed), in the order they were added
+     * @throws InterruptedException if interrupted while waiting for the data sets
+     */
+    public Map<String, Long> run(DatasetRun run) throws InterruptedException {
+        List<Entry> pending = new ArrayList<>(this.entries);
+        pending.sort(Comparator.comparingLong((Entry e) -> -e.memory).thenComparing(e -> e.dataset));
+        ExecutorService pool = Executors.newCachedThreadPool();
+
+        try {
+            synchronized (this) {
+                while (!pending.isEmpty() || this.running > 0) {
+                    Iterator<Entry> it = pending.iterator();
+
+                    while (it.hasNext()) {
+                        Entry entry = it.next();
+
+                        if (this.running == 0 || this.fits(entry)) {
+                            it.remove();
+                            this.start(pool, entry, run);
+                        }
+                    }
+
+                    this.wait();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Map<String, Long> wallTimes = new LinkedHashMap<>();
+        System.out.println("wall time per data set:");
+
+        for (Entry entry : this.entries) {
+            wallTimes.put(entry.dataset, entry.wallTime);
+            System.out.println(String.format("%s: %s (estimated heap: %.1f MB)", entry.dataset,
+                    entry.wallTime < 0 ? "failed" : String.format("%.1f s", entry.wallTime / 1e9),
+                    entry.memory / 1e6));
+        }
+
+        return wallTimes;
+    }
+
+    private void start(ExecutorService pool, Entry entry, DatasetRun run) {
+        this.usedHeap += entry.memory;
+        this.usedCores += entry.cores;
+        this.running++;
+
+        pool.submit(() -> {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ExecutorService executor = Executors.newFixedThreadPool(entry.cores);
+            long start = System.nanoTime();
+            long wallTime = -1;
+
+            try (PrintStream out = new PrintStream(output, true)) {
+                run.run(entry.dataset, out, executor);
+                wallTime = System.nanoTime() - start;
+            } catch (Exception e) {
+                Logger.getLogger(DatasetScheduler.class.getName()).log(Level.SEVERE, entry.dataset, e);
+            } finally {
+                executor.shutdownNow();
+                System.out.print(output.toString());
+
+                synchronized (this) {
+                    entry.wallTime = wallTime;
+                    this.usedHeap -= entry.memory;
+                    this.usedCores -= entry.cores;
+                    this.running--;
+                    this.notifyAll();
+                }
+            }
+        });
+    }
+}
@@ -2,6 +2,7 @@ package com.cs_pum.uncertain_mlc.examples;
 
 import com.cs_pum.uncertain_mlc.common.LabelMetadata;
 import com.cs_pum.uncertain_mlc.common.LabelSpaceReduction;
+import com.cs_pum.uncertain_mlc.common.LabelSpaceView;
 import mulan.classifier.MultiLabelLearner;
 import mulan.classifier.MultiLabelOutput;
 import mulan.data.MultiLabelInstances;
@@ -12,14 +13,19 @@ import put.mlc.classifiers.pcc.inference.Inference;
 import put.mlc.examples.common.Experiment;
 import weka.classifiers.functions.Logistic;
 import weka.core.Instance;
-import weka.core.Instances;
 import weka.core.Utils;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintStream;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,6 +35,7 @@ public class ExportMetadata extends Experiment {
     Inference inference;
     HashMap<String, Integer> labelCounts;
     HashMap<String, Boolean> labelsFirst;
+    DatasetScheduler scheduler = null;
 
     public ExportMetadata() {
         String[] datasets = {
@@ -75,49 +82,125 @@ public class ExportMetadata extends Experiment {
         this.inference = new ExhaustiveInference();
     }
 
+    /**
+     * @param scheduler scheduler to run the data sets concurrently with, by default (null) they run one after another
+     */
+    public void setScheduler(DatasetScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
     @Override
     public void runExperiment() throws Exception {
-        for (String dataset : this.dataSets) {
-            MultiLabelInstances data;
-            FileInputStream fileStream = null;
-            File arffFile = new File("datasets/" + dataset + ".arff");
-            fileStream = new FileInputStream(arffFile);
-            boolean labelsFirst = (boolean) this.labelsFirst.get(dataset);
-
-            data = new MultiLabelInstances((InputStream) fileStream,
-                    (int) this.labelCounts.get(dataset),
-                    labelsFirst);
-
-            if (data.getNumLabels() > 10) {
-                System.out.println("reduced labels to 10");
-                data = LabelSpaceReduction.reduceLabelSpace(data, 10, labelsFirst);
+        if (this.scheduler == null) {
+            for (String dataset : this.dataSets) {
+                this.runDataset(dataset, System.out, null);
             }
 
-            Instances workingSet = new Instances(data.getDataSet());
-            String[] labelNames = new String[data.getLabelsMetaData().getLabelNames().size()];
-            data.getLabelsMetaData().getLabelNames().toArray(labelNames);
-
-            System.out.println("labels:");
-            System.out.println(Utils.arrayToString(labelNames));
-            System.out.println("label frequencies:");
-            System.out.println(Utils.arrayToString(LabelMetadata.getLabelFrequencies(data, labelsFirst)));
-            System.out.println("label counts:");
-            System.out.println(Utils.arrayToString(LabelMetadata.getLabelCounts(data, labelsFirst)));
-            System.out.println("label cardinality:");
-            System.out.println(data.getCardinality());
-
-            System.out.println("no labels:");
-            System.out.println(data.getNumLabels());
-            System.out.println("no instances");
-            System.out.println(data.getNumInstances());
-            System.out.println("no features");
-            System.out.println(data.getFeatureAttributes().size());
+            return;
+        }
+
+        for (String dataset : this.dataSets) {
+            this.scheduler.add(dataset, new File("datasets/" + dataset + ".arff"), this.labelCounts.get(dataset));
+        }
+
+        this.scheduler.run(this::runDataset);
+    }
+
+    /**
+     * @param executor ignored, metadata are exported on the calling thread
+     */
+    private void runDataset(String dataset, PrintStream report, ExecutorService executor) throws Exception {
+        report.println("Metadata for \"" + dataset + "\":");
+        MultiLabelInstances data;
+        FileInputStream fileStream = null;
+        File arffFile = new File("datasets/" + dataset + ".arff");
+        fileStream = new FileInputStream(arffFile);
+        boolean labelsFirst = (boolean) this.labelsFirst.get(dataset);
+
+        data = new MultiLabelInstances((InputStream) fileStream,
+                (int) this.labelCounts.get(dataset),
+                labelsFirst);
+
+        // dependencies between all labels, before they are reduced
+        this.writeDependencies(dataset, data, labelsFirst);
+
+        // only metadata are exported, so the reduced data never need to be copied
+        LabelSpaceView view = LabelSpaceReduction.view(data, 10, labelsFirst);
+
+        if (data.getNumLabels() > 10) {
+            report.println("reduced labels to 10");
+        }
+
+        report.println("labels:");
+        report.println(Utils.arrayToString(view.getLabelNames()));
+        report.println("label frequencies:");
+        report.println(Utils.arrayToString(view.getLabelFrequencies()));
+        report.println("label counts:");
+        report.println(Utils.arrayToString(view.getLabelCounts()));
+        report.println("label cardinality:");
+        report.println(view.getCardinality());
+
+        report.println("no labels:");
+        report.println(view.getNumLabels());
+        report.println("no instances");
+        report.println(view.getNumInstances());
+        report.println("no features");
+        report.println(view.getNumFeatures());
+    }
+
+    /**
+     * Writes co-occurrence counts, conditional probabilities and mutual information of all pairs of labels to
+     * `results/<statistic>-<dataset>.csv`, with the label names as header.
+     */
+    private void writeDependencies(String dataset, MultiLabelInstances data, boolean labelsFirst) throws IOException {
+        String[] labelNames = new String[data.getLabelsMetaData().getLabelNames().size()];
+        data.getLabelsMetaData().getLabelNames().toArray(labelNames);
+
+        int[][] cooccurrences = LabelMetadata.getCooccurrences(data, labelsFirst);
+        double[][] counts = new double[cooccurrences.length][];
+
+        for (int a = 0; a < cooccurrences.length; a++) {
+            counts[a] = Arrays.stream(cooccurrences[a]).asDoubleStream().toArray();
+        }
+
+        writeMatrix("results/cooccurrences-" + dataset + ".csv", labelNames, counts);
+        writeMatrix("results/conditional-probabilities-" + dataset + ".csv", labelNames,
+                LabelMetadata.getConditionalProbabilities(cooccurrences));
+        writeMatrix("results/mutual-information-" + dataset + ".csv", labelNames,
+                LabelMetadata.getMutualInformation(cooccurrences, data.getNumInstances()));
+    }
+
+    private static void writeMatrix(String fileName, String[] labelNames, double[][] matrix) throws IOException {
+        DecimalFormat formatter = new DecimalFormat("#.########");
+
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(fileName))) {
+            out.write("label," + String.join(",", labelNames) + "\n");
+
+            for (int a = 0; a < matrix.length; a++) {
+                StringBuilder line = new StringBuilder(labelNames[a]);
+
+                for (double value : matrix[a]) {
+                    line.append(',').append(Double.isNaN(value) ? "NaN" : formatter.format(value));
+                }
+
+                out.write(line.append('\n').toString());
+            }
         }
     }
 
     public static void main(String[] args) throws Exception {
         // System.setErr(new PrintStream(new File("errors.txt")));
-        Experiment experiment = new ExportMetadata();
+        ExportMetadata experiment = new ExportMetadata();
+
+        // `<heap budget in MB> <number of cores>` runs the data sets concurrently within these budgets
+        if (args.length == 2) {
+            DatasetScheduler scheduler = new DatasetScheduler(Long.parseLong(args[0]) << 20,
+                    Integer.parseInt(args[1]));
+            // metadata are exported by a single thread per data set
+            scheduler.setThreadsPerDataset(1);
+            experiment.setScheduler(scheduler);
+        }
+
         experiment.runExperiment();
     }
 }
@@ -0,0 +1,153 @@
+package com.cs_pum.uncertain_mlc.examples;
+
+import mulan.classifier.MultiLabelLearner;
+import mulan.data.MultiLabelInstances;
+import mulan.evaluation.Evaluator;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Trains and predicts the folds of a cross-validation as independent tasks, as done by the experiments. Every task
+ * trains its own copy of the learner on its own training split and collects its predictions in its own lists, the
+ * data set itself is only read. The folds are returned in the order of their index, so that anything merged from
+ * them does not depend on the order in which the tasks finish.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-26
+ */
+public class FoldExecution {
+    /**
+     * Predictions of one fold.
+     */
+    public static class Fold {
+        public final int index;
+        public final List<double[]> confidences = new ArrayList<>();
+        public final List<double[]> groundTruth = new ArrayList<>();
+
+        Fold(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * Consumes the predictions of a fold.
+     */
+    public interface FoldConsumer {
+        void accept(Fold fold) throws Exception;
+    }
+
+    /**
+     * Runs all folds on the executor and waits for them. Folds that fail are logged and skipped, like in the
+     * sequential loop this replaces.
+     *
+     * @param executor executor to run the folds on, or null to run them on a pool of one thread per fold (at most
+     *                 one per core) that is shut down afterwards
+     * @param learner learner to copy for every fold
+     * @param data data set to split (in their current order)
+     * @param numFolds number of folds
+     * @return predictions of the successful folds, by ascending fold index
+     * @throws InterruptedException if interrupted while waiting for the folds
+     */
+    public static List<Fold> run(ExecutorService executor, MultiLabelLearner learner, MultiLabelInstances data,
+                                 int numFolds) throws InterruptedException {
+        List<Fold> folds = new ArrayList<>();
+
+        try {
+            run(executor, learner, data, numFolds, folds::add);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            // adding to a list does not throw
+            throw new IllegalStateException(e);
+        }
+
+        return folds;
+    }
+
+    /**
+     * Runs all folds on the executor, and passes each fold to the consumer as soon as it and all folds before it
+     * are done, so that the predictions of the first folds can be processed while the others are still running.
+     * A fold is not referenced anymore once it has been consumed. Folds that fail are logged and skipped.
+     *
+     * @param executor executor to run the folds on, or null to run them on a pool of one thread per fold (at most
+     *                 one per core) that is shut down afterwards
+     * @param learner learner to copy for every fold
+     * @param data data set to split (in their current order)
+     * @param numFolds number of folds
+     * @param consumer called with the predictions of the successful folds, by ascending fold index
+     * @throws Exception if interrupted while waiting for the folds, or thrown by the consumer
+     */
+    public static void run(ExecutorService executor, MultiLabelLearner learner, MultiLabelInstances data,
+                           int numFolds, FoldConsumer consumer) throws Exception {
+        if (executor == null) {
+            ExecutorService pool = Executors.newFixedThreadPool(
+                    Math.min(numFolds, Runtime.getRuntime().availableProcessors()));
+
+            try {
+                run(pool, learner, data, numFolds, consumer);
+                return;
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        List<Future<Fold>> futures = new ArrayList<>();
+
+        for (int i = 0; i < numFolds; i++) {
+            final int fold = i;
+            futures.add(executor.submit(() -> predict(learner, data, numFolds, fold)));
+        }
+
+        for (int i = 0; i < numFolds; i++) {
+            Fold fold;
+
+            try {
+                fold = futures.get(i).get();
+            } catch (ExecutionException e) {
+                Logger.getLogger(Evaluator.class.getName()).log(Level.SEVERE, null, e.getCause());
+                continue;
+            } finally {
+                futures.set(i, null);
+            }
+
+            consumer.accept(fold);
+        }
+    }
+
+    private static Fold predict(MultiLabelLearner learner, MultiLabelInstances data, int numFolds, int i)
+            throws Exception {
+        Instances workingSet = data.getDataSet();
+        Instances train = workingSet.trainCV(numFolds, i);
+        Instances test = workingSet.testCV(numFolds, i);
+        int[] labelIndices = data.getLabelIndices();
+
+        MultiLabelLearner clone = learner.makeCopy();
+        clone.build(new MultiLabelInstances(train, data.getLabelsMetaData()));
+
+        Fold fold = new Fold(i);
+
+        for (int j = 0; j < test.numInstances(); j++) {
+            Instance testInstance = test.instance(j);
+            double[] groundTruth = new double[labelIndices.length];
+
+            for (int k = 0; k < labelIndices.length; k++) {
+                groundTruth[k] = testInstance.value(labelIndices[k]);
+            }
+
+            fold.confidences.add(clone.makePrediction(testInstance).getConfidences());
+            fold.groundTruth.add(groundTruth);
+        }
+
+        return fold;
+    }
+}
@@ -0,0 +1,159 @@
+package com.cs_pum.uncertain_mlc.examples;
+
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+import com.cs_pum.uncertain_mlc.losses.UncertainHammingKernel;
+import com.cs_pum.uncertain_mlc.losses.UncertainHammingLoss;
+import com.cs_pum.uncertain_mlc.losses.UncertainLossState;
+import mulan.classifier.MultiLabelOutput;
+import mulan.evaluation.GroundTruth;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Compares the throughput of the branching per-instance evaluation of the uncertain hamming loss
+ * (`UncertainHammingLoss.update(MultiLabelOutput, GroundTruth)`) with the branchless kernel
+ * (`UncertainHammingKernel`) in double and single precision. The prediction matrices are read from the files
+ * written by `MakePredictions`; datasets without predictions are skipped.
+ *
+ * Every variant evaluates the same 30 taus as `TauOptimization.tauGridSearch` and is run a few times before
+ * measuring, so that the JIT has compiled the loops.
+ */
+public class KernelBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 20;
+    private static final int NO_TAUS = 30;
+
+    private static double tau(int i) {
+        return (i + 1) * (.5 / NO_TAUS);
+    }
+
+    private static long timeBranching(MultiLabelOutput[] outputs, GroundTruth[] truths) {
+        long start = System.nanoTime();
+        double sink = 0;
+
+        for (int t = 0; t < NO_TAUS; t++) {
+            UncertainHammingLoss loss = new UncertainHammingLoss(tau(t), .5);
+
+            for (int i = 0; i < outputs.length; i++) {
+                loss.update(outputs[i], truths[i]);
+            }
+
+            sink += loss.getValue();
+        }
+
+        if (sink < 0) {
+            System.out.println(sink);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private static long timeKernel(PredictionMatrix predictions) {
+        long start = System.nanoTime();
+        double sink = 0;
+
+        for (int t = 0; t < NO_TAUS; t++) {
+            UncertainLossState state = new UncertainLossState(predictions.getNumLabels());
+            UncertainHammingKernel.accumulate(predictions.getConfidences(), predictions.getGroundTruth(), 0,
+                    predictions.getNumInstances(), predictions.getNumLabels(), tau(t), .5, state);
+            sink += state.getAccum();
+        }
+
+        if (sink < 0) {
+            System.out.println(sink);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private static long timeKernel(float[] confidences, PredictionMatrix predictions) {
+        long start = System.nanoTime();
+        double sink = 0;
+
+        for (int t = 0; t < NO_TAUS; t++) {
+            UncertainLossState state = new UncertainLossState(predictions.getNumLabels());
+            UncertainHammingKernel.accumulate(confidences, predictions.getGroundTruth(), 0,
+                    predictions.getNumInstances(), predictions.getNumLabels(), tau(t), .5, state);
+            sink += state.getAccum();
+        }
+
+        if (sink < 0) {
+            System.out.println(sink);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] datasets = {
+                "emotions",
+                "enron",
+                "mediamill",
+                "medical",
+                "scene",
+                "tmc2007-500",
+                "yeast",
+                "IMDB-F",
+                "SLASHDOT-F",
+                "OHSUMED-F",
+                "REUTERS-K500-EX2"
+        };
+
+        for (String dataset : datasets) {
+            String fileName = "results/predictions-" + dataset + ".bin";
+
+            if (!new File(fileName).exists()) {
+                System.out.println("# skipping " + dataset + ": no predictions found");
+                continue;
+            }
+
+            List<double[]> confidences = new ArrayList<double[]>();
+            List<double[]> groundTruth = new ArrayList<double[]>();
+            TauOptimization.readPredictions(fileName, confidences, groundTruth);
+
+            PredictionMatrix predictions = PredictionMatrix.fromLists(confidences, groundTruth);
+            float[] floatConfidences = new float[predictions.getConfidences().length];
+            MultiLabelOutput[] outputs = new MultiLabelOutput[confidences.size()];
+            GroundTruth[] truths = new GroundTruth[confidences.size()];
+
+            for (int i = 0; i < floatConfidences.length; i++) {
+                floatConfidences[i] = (float) predictions.getConfidences()[i];
+            }
+
+            for (int i = 0; i < outputs.length; i++) {
+                outputs[i] = new MultiLabelOutput(confidences.get(i), .5);
+                truths[i] = new GroundTruth(new MultiLabelOutput(groundTruth.get(i), .5).getBipartition());
+            }
+
+            for (int r = 0; r < WARMUP_ROUNDS; r++) {
+                timeBranching(outputs, truths);
+                timeKernel(predictions);
+                timeKernel(floatConfidences, predictions);
+            }
+
+            long branching = Long.MAX_VALUE;
+            long kernel = Long.MAX_VALUE;
+            long floatKernel = Long.MAX_VALUE;
+
+            for (int r = 0; r < ROUNDS; r++) {
+                branching = Math.min(branching, timeBranching(outputs, truths));
+                kernel = Math.min(kernel, timeKernel(predictions));
+                floatKernel = Math.min(floatKernel, timeKernel(floatConfidences, predictions));
+            }
+
+            double labels = (double) NO_TAUS * predictions.getNumInstances() * predictions.getNumLabels();
+
+            System.out.println("# " + dataset + " (" + predictions.getNumInstances() + " x "
+                    + predictions.getNumLabels() + ")");
+            System.out.println(String.format("branching:      %8.2f ms, %8.1f Mlabels/s",
+                    branching / 1e6, labels / branching * 1e3));
+            System.out.println(String.format("kernel (double): %7.2f ms, %8.1f Mlabels/s, speedup %.2fx",
+                    kernel / 1e6, labels / kernel * 1e3, (double) branching / kernel));
+            System.out.println(String.format("kernel (float):  %7.2f ms, %8.1f Mlabels/s, speedup %.2fx",
+                    floatKernel / 1e6, labels / floatKernel * 1e3, (double) branching / floatKernel));
+        }
+    }
+}
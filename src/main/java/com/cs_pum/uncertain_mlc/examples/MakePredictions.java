@@ -2,10 +2,8 @@ package com.cs_pum.uncertain_mlc.examples;
 
 import com.cs_pum.uncertain_mlc.common.LabelMetadata;
 import com.cs_pum.uncertain_mlc.common.LabelSpaceReduction;
-import mulan.classifier.MultiLabelLearner;
-import mulan.classifier.MultiLabelOutput;
+import com.cs_pum.uncertain_mlc.io.PredictionStoreWriter;
 import mulan.data.MultiLabelInstances;
-import mulan.evaluation.Evaluator;
 import put.mlc.classifiers.pcc.PCC;
 import put.mlc.classifiers.pcc.inference.ExhaustiveInference;
 import put.mlc.classifiers.pcc.inference.Inference;
@@ -17,10 +15,8 @@ import weka.core.Utils;
 import weka.filters.unsupervised.instance.Randomize;
 
 import java.io.*;
-import java.text.DecimalFormat;
 import java.util.HashMap;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Makes and saves probabistic predictions on all the datasets. The data are split into
@@ -33,6 +29,8 @@ public class MakePredictions extends Experiment  {
     Inference inference;
     HashMap<String, Integer> labelCounts;
     HashMap<String, Boolean> labelsFirst;
+    ExecutorService executor = null;
+    DatasetScheduler scheduler = null;
 
     public MakePredictions() {
         String[] datasets = {
@@ -109,129 +107,104 @@ public class MakePredictions extends Experiment  {
         return new MultiLabelInstances(shuffledData, instances.getLabelsMetaData());
     }
 
-    private void writeCSV(String csv, String fileName) throws Exception {
-        File file = new File(fileName);
-
-        assert file.exists() || file.createNewFile();
-
-        BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file));
-        out.write(csv.getBytes());
-        out.close();
+    /**
+     * @param executor executor to run the folds on, by default (null) a pool of one thread per fold is used
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
     }
 
-    private String[] prependStringArr(String[] arr, String prefix) {
-        for (int i = 0; i < arr.length; i++) {
-            arr[i] = prefix + arr[i];
-        }
-
-        return arr;
+    /**
+     * @param scheduler scheduler to run the data sets concurrently with, by default (null) they run one after another
+     *                  (with their models trained on the pools of the scheduler instead of the executor)
+     */
+    public void setScheduler(DatasetScheduler scheduler) {
+        this.scheduler = scheduler;
     }
 
     @Override
     public void runExperiment() throws Exception {
-        for (String dataset : this.dataSets) {
-            System.out.println("Experiment for \"" + dataset + "\":");
-            MultiLabelInstances data;
-            int someFolds = 3;
-
-            DecimalFormat formatter = new DecimalFormat("#.########");
-            FileInputStream fileStream;
-            File arffFile = new File("datasets/" + dataset + ".arff");
-            fileStream = new FileInputStream(arffFile);
-            boolean labelsFirst = this.labelsFirst.get(dataset);
-
-            data = new MultiLabelInstances(fileStream,
-                    this.labelCounts.get(dataset),
-                    labelsFirst);
-
-            if (data.getNumLabels() > 10) {
-                System.out.println("reduced labels to 10");
-                data = LabelSpaceReduction.reduceLabelSpace(data, 10, labelsFirst);
+        if (this.scheduler == null) {
+            for (String dataset : this.dataSets) {
+                this.runDataset(dataset, System.out, this.executor);
             }
 
-            Instances workingSet = new Instances(data.getDataSet());
-            PCC model = new PCC(this.inference);
-            model.setBaseClassifier(new Logistic());
-            String[] labelNames = new String[data.getLabelsMetaData().getLabelNames().size()];
-            data.getLabelsMetaData().getLabelNames().toArray(labelNames);
-
-            System.out.println("labels:");
-            System.out.println(Utils.arrayToString(labelNames));
-            System.out.println("label frequencies:");
-            System.out.println(Utils.arrayToString(LabelMetadata.getLabelFrequencies(data, labelsFirst)));
-            System.out.println("label counts:");
-            System.out.println(Utils.arrayToString(LabelMetadata.getLabelCounts(data, labelsFirst)));
-
-            StringBuilder out = new StringBuilder(String.join(",",
-                    this.prependStringArr(labelNames, "pred_")) + ",fold,"
-                    + String.join(",", data.getLabelsMetaData().getLabelNames()) + '\n');
-
-            for(int i = 0; i < someFolds; ++i) {
-                try {
-                    int numLabels = data.getNumLabels();
-                    int numFeatures = data.getFeatureAttributes().size();
-
-                    Instances train = workingSet.trainCV(someFolds, i);
-                    Instances test = workingSet.testCV(someFolds, i);
-
-                    MultiLabelInstances mlTrain = new MultiLabelInstances(train, data.getLabelsMetaData());
-                    // MultiLabelInstances mlTest = new MultiLabelInstances(test, data.getLabelsMetaData());
-
-                    MultiLabelLearner clone = model.makeCopy();
-                    clone.build(mlTrain);
-
-                    /*
-                    // TODO: port code so that we can use it here
-                    if (hasMeasures) {
-                        evaluation[i] = this.evaluate(clone, mlTest, measures);
-                    } else {
-                        evaluation[i] = this.evaluate(clone, mlTest, mlTrain);
-                    }
-                    */
-                    for (int j = 0; j < test.numInstances(); j++) {
-                        Instance testInstance = test.instance(j);
-                        double[] inst = testInstance.toDoubleArray();
-                        MultiLabelOutput res = clone.makePrediction(testInstance);
-                        double[] confidences = res.getConfidences();
-
-                        for (double confidence : confidences) {
-                            // predicted labels (probability y_i = 1)
-                            out.append(formatter.format(confidence)).append(',');
-                        }
-
-                        // #fold
-                        out.append((new Integer(i)).toString()).append(',');
-
-                        // ground truth
-                        for (int k = 0; k < numLabels; k++) {
-                            if (labelsFirst) {
-                                out.append(inst[k]);
-                            } else {
-                                out.append(inst[k + numFeatures]);
-                            }
-
-                            if (k < (numLabels - 1)) {
-                                out.append(",");
-                           }
-                        }
-
-                        out.append('\n');
-                    }
-
-                } catch (Exception var14) {
-                    Logger.getLogger(Evaluator.class.getName()).log(Level.SEVERE, null, var14);
-                }
+            return;
+        }
 
-                /* save confidences of predictions (probabilistic predictions) to csv */
-                this.writeCSV(out.toString(), "results/predictions-" + dataset + ".csv");
+        for (String dataset : this.dataSets) {
+            File reducedFile = new File("datasets/" + dataset + "-reduced.arff");
+            boolean reduced = this.labelCounts.get(dataset) > 10 && reducedFile.exists();
+            this.scheduler.add(dataset, reduced ? reducedFile : new File("datasets/" + dataset + ".arff"),
+                    reduced ? 10 : this.labelCounts.get(dataset));
+        }
 
-            }
+        this.scheduler.run(this::runDataset);
+    }
+
+    /**
+     * @param executor executor to train the models on, or null to use a pool per cross-validation
+     */
+    private void runDataset(String dataset, PrintStream report, ExecutorService executor) throws Exception {
+        report.println("Experiment for \"" + dataset + "\":");
+        MultiLabelInstances data;
+        int someFolds = 3;
+
+        FileInputStream fileStream;
+        File arffFile = new File("datasets/" + dataset + ".arff");
+        File reducedFile = new File("datasets/" + dataset + "-reduced.arff");
+        boolean labelsFirst = this.labelsFirst.get(dataset);
+        int numFileLabels = this.labelCounts.get(dataset);
+
+        // data sets that have already been reduced on disk by `ReduceDatasets` are loaded as is
+        if (numFileLabels > 10 && reducedFile.exists()) {
+            arffFile = reducedFile;
+            numFileLabels = 10;
+        }
+
+        fileStream = new FileInputStream(arffFile);
+        data = new MultiLabelInstances(fileStream, numFileLabels, labelsFirst);
+
+        if (data.getNumLabels() > 10) {
+            report.println("reduced labels to 10");
+            data = LabelSpaceReduction.reduceLabelSpace(data, 10, labelsFirst);
+        }
+
+        PCC model = new PCC(this.inference);
+        model.setBaseClassifier(new Logistic());
+        String[] labelNames = new String[data.getLabelsMetaData().getLabelNames().size()];
+        data.getLabelsMetaData().getLabelNames().toArray(labelNames);
+
+        report.println("labels:");
+        report.println(Utils.arrayToString(labelNames));
+        report.println("label frequencies:");
+        report.println(Utils.arrayToString(LabelMetadata.getLabelFrequencies(data, labelsFirst)));
+        report.println("label counts:");
+        report.println(Utils.arrayToString(LabelMetadata.getLabelCounts(data, labelsFirst)));
+
+        /* confidences of predictions (probabilistic predictions), see `ConvertPredictions` for csv */
+        try (PredictionStoreWriter out = new PredictionStoreWriter("results/predictions-" + dataset + ".bin",
+                labelNames)) {
+            // folds are trained and predicted in parallel, their predictions are streamed to the file in the order of
+            // the folds as soon as they are done
+            FoldExecution.run(executor, model, data, someFolds, fold -> {
+                for (int j = 0; j < fold.confidences.size(); j++) {
+                    // predicted labels (probability y_i = 1), ground truth and #fold
+                    out.write(fold.confidences.get(j), fold.groundTruth.get(j), fold.index);
+                }
+            });
         }
     }
 
     public static void main(String[] args) throws Exception {
         // System.setErr(new PrintStream(new File("errors.txt")));
-        Experiment experiment = new MakePredictions();
+        MakePredictions experiment = new MakePredictions();
+
+        // `<heap budget in MB> <number of cores>` runs the data sets concurrently within these budgets
+        if (args.length == 2) {
+            experiment.setScheduler(new DatasetScheduler(Long.parseLong(args[0]) << 20, Integer.parseInt(args[1])));
+        }
+
         experiment.runExperiment();
     }
 }
\ No newline at end of file
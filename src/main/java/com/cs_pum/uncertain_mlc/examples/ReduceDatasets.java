@@ -0,0 +1,64 @@
+package com.cs_pum.uncertain_mlc.examples;
+
+import com.cs_pum.uncertain_mlc.io.ArffLabelReduction;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Reduces the data sets with more than 10 labels to their 10 most frequent labels on disk (see
+ * `ArffLabelReduction`), and writes them to `datasets/<dataset>-reduced.arff`. The experiments load these files
+ * instead of reducing the data sets after loading them, if present. The selected labels are the same as those of
+ * `LabelSpaceReduction`.
+ *
+ * Usage: `ReduceDatasets [<dataset> <number of labels> <labels first>]`, without arguments all data sets of the
+ * experiments are reduced.
+ */
+public class ReduceDatasets {
+    private static final int NUM_LABELS_TO_KEEP = 10;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Integer> labelCounts = new LinkedHashMap<>();
+        Map<String, Boolean> labelsFirst = new LinkedHashMap<>();
+
+        if (args.length == 3) {
+            labelCounts.put(args[0], Integer.parseInt(args[1]));
+            labelsFirst.put(args[0], Boolean.parseBoolean(args[2]));
+        } else {
+            labelCounts.put("enron", 53);
+            labelCounts.put("mediamill", 101);
+            labelCounts.put("medical", 45);
+            labelCounts.put("tmc2007-500", 22);
+            labelCounts.put("yeast", 14);
+            labelCounts.put("IMDB-F", 28);
+            labelCounts.put("OHSUMED-F", 23);
+            labelCounts.put("SLASHDOT-F", 22);
+            labelCounts.put("REUTERS-K500-EX2", 14);
+
+            for (String dataset : labelCounts.keySet()) {
+                labelsFirst.put(dataset, dataset.endsWith("-F") || dataset.endsWith("-EX2"));
+            }
+        }
+
+        for (String dataset : labelCounts.keySet()) {
+            File arffFile = new File("datasets/" + dataset + ".arff");
+
+            if (!arffFile.exists() || labelCounts.get(dataset) <= NUM_LABELS_TO_KEEP) {
+                System.out.println("skipping " + dataset);
+                continue;
+            }
+
+            long start = System.nanoTime();
+            ArffLabelReduction reduction = new ArffLabelReduction(arffFile.getPath(), labelCounts.get(dataset),
+                    labelsFirst.get(dataset));
+            int[] kept = reduction.reduce("datasets/" + dataset + "-reduced.arff", NUM_LABELS_TO_KEEP);
+
+            System.out.println(String.format("%s: kept labels %s of %d instances (%.1f s)", dataset,
+                    Arrays.toString(kept), reduction.getLabels().getNumInstances(),
+                    (System.nanoTime() - start) / 1e9));
+        }
+    }
+}
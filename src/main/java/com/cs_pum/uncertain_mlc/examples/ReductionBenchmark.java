@@ -0,0 +1,103 @@
+package com.cs_pum.uncertain_mlc.examples;
+
+import com.cs_pum.uncertain_mlc.common.LabelSpaceReduction;
+import mulan.data.MultiLabelInstances;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+
+/**
+ * Compares time and retained heap of the label space reduction of a sparse data set with that of its dense copy,
+ * i.e. the reduction to sparse instances with the reduction to dense instances of the same data. Each variant
+ * is run a few times before measuring, and the heap is measured after a garbage collection while the reduced
+ * data are still referenced.
+ *
+ * Usage: `ReductionBenchmark [<dataset> <number of labels> <labels first>]`, without arguments the reduction of
+ * enron and OHSUMED-F to 10 labels is measured.
+ */
+public class ReductionBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 10;
+    private static final int NUM_LABELS_TO_KEEP = 10;
+
+    private static MultiLabelInstances densify(MultiLabelInstances instances) throws Exception {
+        Instances data = instances.getDataSet();
+        Instances dense = new Instances(data, data.numInstances());
+
+        for (int i = 0; i < data.numInstances(); i++) {
+            Instance inst = data.instance(i);
+            Instance copy = new DenseInstance(inst.weight(), inst.toDoubleArray());
+            copy.setDataset(dense);
+            dense.add(copy);
+        }
+
+        return new MultiLabelInstances(dense, instances.getLabelsMetaData());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void measure(String variant, MultiLabelInstances data, boolean labelsFirst) throws Exception {
+        for (int r = 0; r < WARMUP_ROUNDS; r++) {
+            LabelSpaceReduction.reduceLabelSpace(data, NUM_LABELS_TO_KEEP, labelsFirst);
+        }
+
+        long time = 0;
+
+        for (int r = 0; r < ROUNDS; r++) {
+            long start = System.nanoTime();
+            LabelSpaceReduction.reduceLabelSpace(data, NUM_LABELS_TO_KEEP, labelsFirst);
+            time += System.nanoTime() - start;
+        }
+
+        long before = usedHeap();
+        MultiLabelInstances reduced = LabelSpaceReduction.reduceLabelSpace(data, NUM_LABELS_TO_KEEP, labelsFirst);
+        long retained = usedHeap() - before;
+
+        System.out.println(String.format("%s: %.2f ms per reduction, %.2f MB retained (%d instances)", variant,
+                time / 1e6 / ROUNDS, retained / 1e6, reduced.getNumInstances()));
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] datasets = {"enron", "OHSUMED-F"};
+        int[] labelCounts = {53, 23};
+        boolean[] labelsFirst = {false, true};
+
+        if (args.length == 3) {
+            datasets = new String[]{args[0]};
+            labelCounts = new int[]{Integer.parseInt(args[1])};
+            labelsFirst = new boolean[]{Boolean.parseBoolean(args[2])};
+        }
+
+        for (int d = 0; d < datasets.length; d++) {
+            File arffFile = new File("datasets/" + datasets[d] + ".arff");
+
+            if (!arffFile.exists()) {
+                System.out.println("skipping " + datasets[d] + ", no data set found");
+                continue;
+            }
+
+            MultiLabelInstances data;
+
+            try (InputStream fileStream = new FileInputStream(arffFile)) {
+                data = new MultiLabelInstances(fileStream, labelCounts[d], labelsFirst[d]);
+            }
+
+            System.out.println(datasets[d] + ":");
+            measure("dense", densify(data), labelsFirst[d]);
+            measure("sparse", data, labelsFirst[d]);
+        }
+    }
+}
@@ -1,18 +1,31 @@
 package com.cs_pum.uncertain_mlc.examples;
 
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+import com.cs_pum.uncertain_mlc.evaluation.FusedEvaluator;
+import com.cs_pum.uncertain_mlc.io.PredictionCSVReader;
+import com.cs_pum.uncertain_mlc.io.PredictionStore;
 import com.cs_pum.uncertain_mlc.losses.UncertainHammingLoss;
 import com.cs_pum.uncertain_mlc.losses.UncertainLoss;
-import com.opencsv.CSVReader;
+import com.cs_pum.uncertain_mlc.optimization.AdaptiveTauSearch;
+import com.cs_pum.uncertain_mlc.optimization.AdaptiveTauSearchResult;
+import com.cs_pum.uncertain_mlc.optimization.ConfidenceHistogram;
+import com.cs_pum.uncertain_mlc.optimization.LabelThresholdOptimization;
+import com.cs_pum.uncertain_mlc.optimization.LabelThresholds;
+import com.cs_pum.uncertain_mlc.optimization.LossSurface;
+import com.cs_pum.uncertain_mlc.optimization.TauSearchResult;
+import com.cs_pum.uncertain_mlc.optimization.UncertaintyMarginSweep;
 import mulan.classifier.MultiLabelOutput;
 import mulan.evaluation.GroundTruth;
-import mulan.evaluation.measure.HammingLoss;
 import mulan.evaluation.measure.Measure;
-import put.mlc.measures.ZeroOneLossMeasure;
 
-import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 /**
@@ -23,6 +36,7 @@ import java.util.List;
  */
 public class TauOptimization {
     private List<Measure> measures;
+    private FusedEvaluator evaluator;
 
 
     /**
@@ -35,7 +49,7 @@ public class TauOptimization {
      *
      * @return approximately symmetric tau
      */
-    double tauGridSearch(List<double[]> confidences, List<double[]> groundTruth, UncertainLoss measure, double omega, Boolean minimize) {
+    public double tauGridSearch(List<double[]> confidences, List<double[]> groundTruth, UncertainLoss measure, double omega, Boolean minimize) {
         double noCandidates = 30;
         double start = .0;
         double end = .5;
@@ -43,11 +57,23 @@ public class TauOptimization {
         double optTau = 0;
         double optValue = 1;
         double optUncertainty = 0;
+        boolean hasMeasures = this.measures != null && this.measures.size() > 0;
+        PredictionMatrix predictions = PredictionMatrix.fromLists(confidences, groundTruth);
 
-        if (this.measures != null && this.measures.size() > 0) {
+        /* the auxiliary measures do not depend on tau, so they are evaluated once instead of per candidate */
+        if (hasMeasures) {
             for (Measure m : this.measures) {
                 m.reset();
             }
+
+            for (int j = 0; j < confidences.size(); j++) {
+                MultiLabelOutput mlOutput = new MultiLabelOutput(confidences.get(j), .5);
+                MultiLabelOutput gt = new MultiLabelOutput(groundTruth.get(j), .5);
+
+                for (Measure m : this.measures) {
+                    m.update(mlOutput, new GroundTruth(gt.getBipartition()));
+                }
+            }
         }
 
         for (int i = 0; i < noCandidates; i++) {
@@ -57,17 +83,14 @@ public class TauOptimization {
             System.out.println(tau);
             measure.setTau(tau);
             measure.setOmega(omega);
+            measure.update(predictions);
 
-            for (int j = 0; j < confidences.size(); j++) {
-                MultiLabelOutput mlOutput = new MultiLabelOutput(confidences.get(j), .5);
-                MultiLabelOutput gt = new MultiLabelOutput(groundTruth.get(j), .5);
-                measure.update(mlOutput, new GroundTruth(gt.getBipartition()));
-
-                if (this.measures != null) {
-                    for (Measure m : this.measures) {
-                        m.update(mlOutput, new GroundTruth(gt.getBipartition()));
-                    }
-                }
+            if (this.evaluator != null) {
+                this.evaluator.reset();
+                this.evaluator.setTau(tau);
+                this.evaluator.setOmega(omega);
+                this.evaluator.evaluate(predictions);
+                System.out.print(this.evaluator.toString());
             }
 
             System.out.println(measure.toString());
@@ -91,84 +114,291 @@ public class TauOptimization {
         return optTau;
     }
 
+    /**
+     * Parallel variant of `tauGridSearch` for measures without a closed-form sweep. Every candidate is evaluated
+     * on its own copy of `measure` as a task of `pool`, the optimum is then chosen in candidate order, so that,
+     * like in the sequential search, the *first* optimal tau wins. The measure itself is not modified, and the
+     * evaluator set via `setEvaluator(…)` is not run.
+     *
+     * @param measure measure to be optimized, copied per candidate via `makeCopy()`
+     * @param minimize whether to minimize or maximize the given metric
+     * @param pool pool the candidates are evaluated on
+     *
+     * @return optimal tau alongside the loss and uncertainty curve over all candidates
+     */
+    public TauSearchResult tauGridSearchParallel(List<double[]> confidences, List<double[]> groundTruth,
+                                                 UncertainLoss measure, double omega, boolean minimize,
+                                                 ForkJoinPool pool) {
+        int noCandidates = 30;
+        double start = .0;
+        double end = .5;
+        double step = (end - start) / noCandidates;
+        PredictionMatrix predictions = PredictionMatrix.fromLists(confidences, groundTruth);
+        double[] taus = new double[noCandidates];
+        List<Callable<UncertainLoss>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < noCandidates; i++) {
+            double tau = start + ((i + 1) * step);
+            taus[i] = tau;
+
+            tasks.add(() -> {
+                UncertainLoss copy = (UncertainLoss) measure.makeCopy();
+                copy.reset();
+                copy.setTau(tau);
+                copy.setOmega(omega);
+                copy.update(predictions);
+
+                return copy;
+            });
+        }
+
+        double[] losses = new double[noCandidates];
+        double[] uncertainties = new double[noCandidates];
+        List<Future<UncertainLoss>> results = pool.invokeAll(tasks);
+        int optIndex = 0;
+
+        for (int i = 0; i < noCandidates; i++) {
+            UncertainLoss evaluated;
+
+            try {
+                evaluated = results.get(i).get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("evaluation of tau " + taus[i] + " failed", e);
+            }
+
+            losses[i] = evaluated.getValue();
+            uncertainties[i] = evaluated.getUncertainty();
+
+            // strict comparisons keep the first optimum, as in `tauGridSearch`
+            if (minimize ? losses[i] < losses[optIndex] : losses[i] > losses[optIndex]) {
+                optIndex = i;
+            }
+        }
+
+        return new TauSearchResult(taus, losses, uncertainties, optIndex);
+    }
+
+    public TauSearchResult tauGridSearchParallel(List<double[]> confidences, List<double[]> groundTruth,
+                                                 UncertainLoss measure, double omega, boolean minimize) {
+        return tauGridSearchParallel(confidences, groundTruth, measure, omega, minimize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Searches tau to the given resolution with a number of passes over the predictions that is logarithmic in
+     * the resolution (see `AdaptiveTauSearch`), instead of one pass per grid candidate.
+     *
+     * @param measure measure to be minimized
+     * @param resolution width of the bracket around the optimum at which the search stops, e.g. 1e-4
+     * @param strategy coarse-to-fine grid refinement, or golden-section search for unimodal losses
+     *
+     * @return optimal tau alongside the evaluated candidates and the number of passes per round
+     */
+    AdaptiveTauSearchResult tauAdaptiveSearch(List<double[]> confidences, List<double[]> groundTruth,
+                                              UncertainLoss measure, double omega, double resolution,
+                                              AdaptiveTauSearch.Strategy strategy) {
+        return tauAdaptiveSearch(PredictionMatrix.fromLists(confidences, groundTruth), measure, omega, resolution,
+                strategy);
+    }
+
+    AdaptiveTauSearchResult tauAdaptiveSearch(PredictionMatrix predictions, UncertainLoss measure, double omega,
+                                              double resolution, AdaptiveTauSearch.Strategy strategy) {
+        AdaptiveTauSearch search = new AdaptiveTauSearch(measure, omega);
+        search.setResolution(resolution);
+        search.setStrategy(strategy);
+
+        return search.search(predictions);
+    }
+
+    /**
+     * Finds the exact optimal tau of the uncertain hamming loss by sorting all confidences once by their
+     * distance to 1/2 (see `UncertaintyMarginSweep`). In contrast to `tauGridSearch` every distinct tau is
+     * considered, not only the candidates on a grid, and the predictions are scanned only once.
+     *
+     * @param confidences confidences, one array per instance
+     * @param groundTruth ground truth, one array per instance
+     * @param omega weight of an uncertain prediction
+     *
+     * @return optimal tau alongside the loss curve
+     */
+    TauSearchResult tauExactSearch(List<double[]> confidences, List<double[]> groundTruth, double omega) {
+        return new UncertaintyMarginSweep(confidences, groundTruth).sweep(omega);
+    }
+
+    TauSearchResult tauExactSearch(PredictionMatrix predictions, double omega) {
+        return new UncertaintyMarginSweep(predictions).sweep(omega);
+    }
+
+    /**
+     * Optimizes per-label thresholds of the uncertain hamming loss (see `LabelThresholdOptimization`).
+     *
+     * @param confidences confidences, one array per instance
+     * @param groundTruth ground truth, one array per instance
+     * @param omega weight of an uncertain prediction
+     * @param symmetric whether to optimize one tau per label, or independent lower and upper thresholds
+     *
+     * @return optimal thresholds per label
+     */
+    LabelThresholds labelThresholdSearch(List<double[]> confidences, List<double[]> groundTruth, double omega,
+                                         boolean symmetric) {
+        return labelThresholdSearch(PredictionMatrix.fromLists(confidences, groundTruth), omega, symmetric);
+    }
+
+    LabelThresholds labelThresholdSearch(PredictionMatrix predictions, double omega, boolean symmetric) {
+        if (symmetric) {
+            return LabelThresholdOptimization.optimizeSymmetric(predictions, omega);
+        }
+
+        return LabelThresholdOptimization.optimizeAsymmetric(predictions, omega);
+    }
+
+    /**
+     * Computes the uncertain hamming loss for a grid of taus and omegas from a single histogram of the
+     * confidences (see `LossSurface`), instead of searching tau again for every omega.
+     *
+     * @param confidences confidences, one array per instance
+     * @param groundTruth ground truth, one array per instance
+     * @param omegas weights of an uncertain prediction to evaluate
+     * @param resolution number of histogram bins, taus are evaluated in steps of 1 / resolution
+     *
+     * @return loss surface
+     */
+    LossSurface lossSurface(List<double[]> confidences, List<double[]> groundTruth, double[] omegas,
+                            int resolution) {
+        ConfidenceHistogram histogram = new ConfidenceHistogram(resolution);
+        histogram.addAll(confidences, groundTruth);
+
+        return new LossSurface(histogram, omegas);
+    }
+
+    LossSurface lossSurface(PredictionMatrix predictions, double[] omegas, int resolution) {
+        ConfidenceHistogram histogram = new ConfidenceHistogram(resolution);
+        histogram.addAll(predictions);
+
+        return new LossSurface(histogram, omegas);
+    }
+
+    /**
+     * Reads predictions as written by `MakePredictions` and `UHLExperiment`. Files ending with `.bin` are mapped
+     * via `PredictionStore`, anything else is parsed as csv by `PredictionCSVReader` (columns `pred_*`, optionally
+     * `fold`, followed by the ground truth, see `ConvertPredictions`).
+     *
+     * @param fileName binary or csv file to read
+     * @param confidences list the confidences of each instance are added to
+     * @param groundTruth list the ground truth of each instance is added to
+     * @throws IOException
+     */
+    static void readPredictions(String fileName, List<double[]> confidences, List<double[]> groundTruth)
+            throws IOException {
+        if (fileName.endsWith(".bin")) {
+            try (PredictionStore store = new PredictionStore(fileName)) {
+                store.readInto(confidences, groundTruth);
+            }
+
+            return;
+        }
+
+        new PredictionCSVReader(fileName).stream((c, gt, fold) -> {
+            // the arrays are reused by the reader for every row
+            confidences.add(c.clone());
+            groundTruth.add(gt.clone());
+        });
+    }
+
+    /**
+     * Reads predictions as written by `MakePredictions` and `UHLExperiment` into a single matrix, without any
+     * list of rows in between: binary files are copied from the mapped sections of `PredictionStore`, csv files
+     * are parsed in parallel by `PredictionCSVReader`.
+     *
+     * @param fileName binary or csv file to read
+     * @return predictions of all rows
+     * @throws IOException
+     */
+    static PredictionMatrix readPredictions(String fileName) throws IOException {
+        if (fileName.endsWith(".bin")) {
+            try (PredictionStore store = new PredictionStore(fileName)) {
+                return store.toPredictionMatrix();
+            }
+        }
+
+        return new PredictionCSVReader(fileName).readParallel(Runtime.getRuntime().availableProcessors());
+    }
+
     public static void main(String[] args) {
         String[] predictionFiles = {
                 /*
-                "results/predictions-emotions.csv",
-                "results/predictions-IMDB-F.csv",*/
-                "results/predictions-medical.csv",/*
-                "results/predictions-REUTERS-K500-EX2.csv",
-                "results/predictions-SLASHDOT-F.csv",
-                "results/predictions-yeast.csv",
-                "results/predictions-enron.csv",
-                "results/predictions-mediamill.csv",
-                "results/predictions-OHSUMED-F.csv",
-                "results/predictions-scene.csv",
-                "results/predictions-tmc2007-500.csv"*/
+                "results/predictions-emotions.bin",
+                "results/predictions-IMDB-F.bin",*/
+                "results/predictions-medical.bin",/*
+                "results/predictions-REUTERS-K500-EX2.bin",
+                "results/predictions-SLASHDOT-F.bin",
+                "results/predictions-yeast.bin",
+                "results/predictions-enron.bin",
+                "results/predictions-mediamill.bin",
+                "results/predictions-OHSUMED-F.bin",
+                "results/predictions-scene.bin",
+                "results/predictions-tmc2007-500.bin"*/
         };
 
         for (String fileName : predictionFiles) {
-            List<double[]> confidences = new ArrayList<double[]>();
-            List<double[]> groundTruth = new ArrayList<double[]>();
-
             System.out.print("# processing: ");
             System.out.println(fileName);
 
-            try {
-                FileReader fileReader = new FileReader(fileName);
-
-                CSVReader reader = new CSVReader(fileReader);
-                String[] nextLine;
-                String[] header = null;
-                int predictionCount = 0;
-                int groundTruthStart = 0;
-
-                while ((nextLine = reader.readNext()) != null) {
-                    if (reader.getLinesRead() == 1) {
-                        header = nextLine;
-
-                        for (String h : header) {
-                            if (h.startsWith("pred_")) {
-                                predictionCount++;
-                                groundTruthStart++;
-                            }
-                        }
-
-                        if (header[groundTruthStart].equals("fold")) {
-                            // skip "fold" header
-                            groundTruthStart++;
-                        }
-
-                    } else {
-                        double[] doubleValues = Arrays.stream(Arrays.copyOfRange(nextLine, 0, predictionCount))
-                                .mapToDouble(Double::parseDouble)
-                                .toArray();
-                        confidences.add(doubleValues);
-
-                        double[] doubleValuesGT = Arrays.stream(Arrays.copyOfRange(nextLine, groundTruthStart, header.length))
-                                .mapToDouble(Double::parseDouble)
-                                .toArray();
-                        groundTruth.add(doubleValuesGT);
-                    }
-                }
+            // all searches below run on this one matrix
+            PredictionMatrix predictions;
 
+            try {
+                predictions = readPredictions(fileName);
             } catch (Exception e) {
                 e.printStackTrace();
+                continue;
             }
 
             TauOptimization tauOpt = new TauOptimization();
-            List<Measure> measures = new ArrayList<Measure>();
-            measures.add(new HammingLoss());
-            measures.add(new UncertainHammingLoss(1./3, 1./2));
-            measures.add(new ZeroOneLossMeasure());
-            tauOpt.setMeasures(measures);
-            double optTau = tauOpt.tauGridSearch(confidences, groundTruth, new UncertainHammingLoss(), .5, true);
+            TauSearchResult result = tauOpt.tauExactSearch(predictions, .5);
+            System.out.println(result.getOptimalUncertainty());
+            System.out.println(result.getOptimalLoss());
             System.out.print(" /!\\ OPTIMAL TAU: ");
-            System.out.println(optTau);
+            System.out.println(result.getOptimalTau());
+
+            AdaptiveTauSearchResult adaptive = tauOpt.tauAdaptiveSearch(predictions,
+                    new UncertainHammingLoss(), .5, 1e-4, AdaptiveTauSearch.Strategy.COARSE_TO_FINE);
+            System.out.print("# adaptive search: ");
+            System.out.println(adaptive);
+
+            LabelThresholds thresholds = tauOpt.labelThresholdSearch(predictions, .5, false);
+            System.out.print("# per-label lower thresholds: ");
+            System.out.println(Arrays.toString(thresholds.getLower()));
+            System.out.print("# per-label upper thresholds: ");
+            System.out.println(Arrays.toString(thresholds.getUpper()));
+            System.out.print("# loss with per-label thresholds: ");
+            System.out.println(thresholds.getLoss());
+
+            double[] omegas = new double[20];
+
+            for (int i = 0; i < omegas.length; i++) {
+                omegas[i] = (i + 1) * (.5 / omegas.length);
+            }
+
+            try {
+                tauOpt.lossSurface(predictions, omegas, 1000)
+                        .writeCSV(fileName.replace("predictions-", "loss-surface-").replace(".bin", ".csv"));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
     public void setMeasures(List<Measure> measures) {
         this.measures = measures;
     }
+
+    /**
+     * Sets an evaluator whose measures are computed for every tau candidate of `tauGridSearch`, within a single
+     * pass over the predictions per candidate.
+     *
+     * @param evaluator evaluator, its tau and omega are overwritten by the search
+     */
+    public void setEvaluator(FusedEvaluator evaluator) {
+        this.evaluator = evaluator;
+    }
 }
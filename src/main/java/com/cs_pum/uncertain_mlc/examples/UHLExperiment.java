@@ -1,18 +1,20 @@
 package com.cs_pum.uncertain_mlc.examples;
 
 import com.cs_pum.uncertain_mlc.common.LabelSpaceReduction;
-import com.cs_pum.uncertain_mlc.losses.UncertainHammingLoss;
-import com.cs_pum.uncertain_mlc.losses.UncertainLoss;
-import mulan.classifier.MultiLabelLearner;
-import mulan.classifier.MultiLabelOutput;
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+import com.cs_pum.uncertain_mlc.evaluation.BootstrapResult;
+import com.cs_pum.uncertain_mlc.evaluation.FusedEvaluator;
+import com.cs_pum.uncertain_mlc.evaluation.FusedMeasure;
+import com.cs_pum.uncertain_mlc.evaluation.NestedCrossValidation;
+import com.cs_pum.uncertain_mlc.evaluation.PoissonBootstrap;
+import com.cs_pum.uncertain_mlc.io.PredictionStore;
+import com.cs_pum.uncertain_mlc.io.PredictionStoreWriter;
+import com.cs_pum.uncertain_mlc.optimization.UncertaintyMarginSweep;
 import mulan.data.InvalidDataFormatException;
 import mulan.data.MultiLabelInstances;
 import mulan.evaluation.Evaluation;
 import mulan.evaluation.Evaluator;
-import mulan.evaluation.GroundTruth;
 import mulan.evaluation.MultipleEvaluation;
-import mulan.evaluation.measure.HammingLoss;
-import mulan.evaluation.measure.Measure;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.math.stat.descriptive.moment.Mean;
 import org.apache.commons.math.stat.descriptive.moment.StandardDeviation;
@@ -20,24 +22,19 @@ import put.mlc.classifiers.pcc.PCC;
 import put.mlc.classifiers.pcc.inference.ExhaustiveInference;
 import put.mlc.classifiers.pcc.inference.Inference;
 import put.mlc.examples.common.Experiment;
-import put.mlc.measures.ZeroOneLossMeasure;
 import weka.classifiers.functions.Logistic;
 import weka.core.Instance;
 import weka.core.Instances;
-import weka.core.Utils;
 import weka.filters.unsupervised.instance.Randomize;
 import weka.filters.unsupervised.instance.RemovePercentage;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.text.DecimalFormat;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.ExecutorService;
 
 
 /**
@@ -51,6 +48,8 @@ public class UHLExperiment extends Experiment {
     Inference inference;
     HashMap<String, Integer> labelCounts;
     HashMap<String, Boolean> labelsFirst;
+    ExecutorService executor = null;
+    DatasetScheduler scheduler = null;
 
     public UHLExperiment() {
         String[] datasets = {
@@ -97,13 +96,6 @@ public class UHLExperiment extends Experiment {
         this.inference = new ExhaustiveInference();
     }
 
-    public void initMeasures(int numOfLabels) {
-        this.measures = new ArrayList<Measure>();
-        this.measures.add(new HammingLoss());
-        this.measures.add(new UncertainHammingLoss(1. / 3, 1. / 3));
-        this.measures.add(new ZeroOneLossMeasure());
-    }
-
     /**
      * Shuffles the instances in a data set.
      *
@@ -213,301 +205,264 @@ public class UHLExperiment extends Experiment {
         return eval.crossValidate(model, data, this.measures, folds);
     }
 
-    private void writeCSV(String csv, String fileName) throws Exception {
-        File file = new File(fileName);
-
-        assert file.exists() || file.createNewFile();
-
-        BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file));
-        out.write(csv.getBytes());
-        out.close();
+    /**
+     * @param executor executor to run the folds on, by default (null) a pool of one thread per fold is used
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
     }
 
-    private String[] prependStringArr(String[] arr, String prefix) {
-        for (int i = 0; i < arr.length; i++) {
-            arr[i] = prefix + arr[i];
-        }
-
-        return arr;
+    /**
+     * @param scheduler scheduler to run the data sets concurrently with, by default (null) they run one after another
+     *                  (with their models trained on the pools of the scheduler instead of the executor)
+     */
+    public void setScheduler(DatasetScheduler scheduler) {
+        this.scheduler = scheduler;
     }
 
     @Override
     public void runExperiment() throws Exception {
-        for (String dataset : this.dataSets) {
-            System.out.println("Experiment for \"" + dataset + "\":");
-            MultiLabelInstances data;
-            int someFolds = 3;
-
-            DecimalFormat formatter = new DecimalFormat("#.########");
-            FileInputStream fileStream;
-            File arffFile = new File("datasets/" + dataset + ".arff");
-            fileStream = new FileInputStream(arffFile);
-            boolean labelsFirst = this.labelsFirst.get(dataset);
-
-            data = new MultiLabelInstances(fileStream,
-                    this.labelCounts.get(dataset),
-                    labelsFirst);
-
-            if (data.getNumLabels() > 10) {
-                System.out.println("reduced labels to 10");
-                data = LabelSpaceReduction.reduceLabelSpace(data, 10, labelsFirst);
+        if (this.scheduler == null) {
+            for (String dataset : this.dataSets) {
+                this.runDataset(dataset, System.out, this.executor);
             }
 
-            Instances workingSet = new Instances(data.getDataSet());
-            PCC model = new PCC(this.inference);
-            model.setBaseClassifier(new Logistic());
-            String[] labelNames = new String[data.getLabelsMetaData().getLabelNames().size()];
-            data.getLabelsMetaData().getLabelNames().toArray(labelNames);
-
-            this.initMeasures(data.getNumLabels());
-
-            StringBuilder out = new StringBuilder(String.join(",",
-                    this.prependStringArr(labelNames, "pred_")) + ",fold,"
-                    + String.join(",", data.getLabelsMetaData().getLabelNames()) + '\n');
-
-            List<List<double[]>> allConfidences = new ArrayList<>();
-            List<List<double[]>> allGroundTruth = new ArrayList<>();
+            return;
+        }
 
-            HashMap<String, List<Double>> results = new HashMap<>();
+        for (String dataset : this.dataSets) {
+            File reducedFile = new File("datasets/" + dataset + "-reduced.arff");
+            boolean reduced = this.labelCounts.get(dataset) > 10 && reducedFile.exists();
+            this.scheduler.add(dataset, reduced ? reducedFile : new File("datasets/" + dataset + ".arff"),
+                    reduced ? 10 : this.labelCounts.get(dataset));
+        }
 
-            for (int i = 0; i < someFolds; ++i) {
-                System.out.println("fold: s" + i);
+        this.scheduler.run(this::runDataset);
+    }
 
-                try {
-                    int numLabels = data.getNumLabels();
-                    int numFeatures = data.getFeatureAttributes().size();
+    /**
+     * @param executor executor to train the models on, or null to use a pool per cross-validation
+     */
+    private void runDataset(String dataset, PrintStream report, ExecutorService executor) throws Exception {
+        report.println("Experiment for \"" + dataset + "\":");
+        MultiLabelInstances data;
+        int someFolds = 3;
+
+        FileInputStream fileStream;
+        File arffFile = new File("datasets/" + dataset + ".arff");
+        File reducedFile = new File("datasets/" + dataset + "-reduced.arff");
+        boolean labelsFirst = this.labelsFirst.get(dataset);
+        int numFileLabels = this.labelCounts.get(dataset);
+
+        // data sets that have already been reduced on disk by `ReduceDatasets` are loaded as is
+        if (numFileLabels > 10 && reducedFile.exists()) {
+            arffFile = reducedFile;
+            numFileLabels = 10;
+        }
 
-                    Instances train = workingSet.trainCV(someFolds, i);
-                    Instances test = workingSet.testCV(someFolds, i);
+        fileStream = new FileInputStream(arffFile);
+        data = new MultiLabelInstances(fileStream, numFileLabels, labelsFirst);
 
-                    MultiLabelInstances mlTrain = new MultiLabelInstances(train, data.getLabelsMetaData());
-                    // MultiLabelInstances mlTest = new MultiLabelInstances(test, data.getLabelsMetaData());
+        if (data.getNumLabels() > 10) {
+            report.println("reduced labels to 10");
+            data = LabelSpaceReduction.reduceLabelSpace(data, 10, labelsFirst);
+        }
 
-                    List<double[]> foldConfidences = new ArrayList<double[]>();
-                    List<double[]> foldGroundTruth = new ArrayList<double[]>();
+        PCC model = new PCC(this.inference);
+        model.setBaseClassifier(new Logistic());
+        String[] labelNames = new String[data.getLabelsMetaData().getLabelNames().size()];
+        data.getLabelsMetaData().getLabelNames().toArray(labelNames);
+
+        /* confidences (probabilistic predictions), see `ConvertPredictions` for csv */
+        String predictionsFile = "results/predictions-" + dataset + ".bin";
+        HashMap<String, List<Double>> results = new HashMap<>();
+        // the folds are the outer folds of the nested cross-validation below
+        PredictionMatrix[] outerPredictions = new PredictionMatrix[someFolds];
+
+        try (PredictionStoreWriter out = new PredictionStoreWriter(predictionsFile, labelNames)) {
+            // folds are trained and predicted in parallel, and merged in the order of the folds as soon as they are
+            // done; their predictions are streamed to the file instead of being kept
+            FoldExecution.run(executor, model, data, someFolds, fold -> {
+                report.println("fold: s" + fold.index);
+
+                List<double[]> foldConfidences = fold.confidences;
+                List<double[]> foldGroundTruth = fold.groundTruth;
+
+                for (int j = 0; j < foldConfidences.size(); j++) {
+                    // predicted labels (probability y_i = 1), ground truth and #fold
+                    out.write(foldConfidences.get(j), foldGroundTruth.get(j), fold.index);
+                }
 
-                    MultiLabelLearner clone = model.makeCopy();
-                    clone.build(mlTrain);
+                // add the optimal tau to the dictionary
+                TauOptimization tOpt = new TauOptimization();
+                double optTau = tOpt.tauExactSearch(foldConfidences, foldGroundTruth, .5).getOptimalTau();
 
-                    for (int j = 0; j < test.numInstances(); j++) {
-                        Instance testInstance = test.instance(j);
-                        double[] inst = testInstance.toDoubleArray();
-                        MultiLabelOutput res = clone.makePrediction(testInstance);
-                        double[] confidences = res.getConfidences();
+                if (results.containsKey("tau")) {
+                    results.get("tau").add(optTau);
+                } else {
+                    ArrayList<Double> l = new ArrayList<>();
+                    l.add(optTau);
+                    results.put("tau", l);
+                }
 
-                        foldConfidences.add(confidences);
+                // add measures for the current fold to the dictionary, all of them within a single pass
+                PredictionMatrix foldPredictions = PredictionMatrix.fromLists(foldConfidences, foldGroundTruth);
 
-                        assert numLabels > 0;
+                FusedEvaluator evaluator = new FusedEvaluator(optTau, 1./3);
+                evaluator.evaluate(foldPredictions);
+                outerPredictions[fold.index] = foldPredictions;
 
-                        /* everything below is for writing the csv file with the confidences */
-                        for (double confidence : confidences) {
-                            // predicted labels (probability y_i = 1)
-                            out.append(formatter.format(confidence)).append(',');
-                        }
+                for (FusedMeasure measure : evaluator.getMeasures()) {
+                    String k = measure.getName();
+                    double ucr = measure.getUncertainty();
 
-                        // #fold
-                        out.append((new Integer(i)).toString()).append(',');
-
-                        // ground truth
-                        double[] groundTruth = new double[numLabels];
-                        for (int k = 0; k < numLabels; k++) {
-                            if (labelsFirst) {
-                                out.append(inst[k]);
-                                groundTruth[k] = inst[k];
-                            } else {
-                                out.append(inst[k + numFeatures]);
-                                groundTruth[k] = inst[k + numFeatures];
-                            }
-
-                            if (k < (numLabels - 1)) {
-                                out.append(",");
-                            }
+                    if (!Double.isNaN(ucr)) {
+                        if (results.containsKey(k + " - uncertainty")) {
+                            results.get(k + " - uncertainty").add(ucr);
+                        } else {
+                            ArrayList<Double> l = new ArrayList<>();
+                            l.add(ucr);
+                            results.put(k + " - uncertainty", l);
                         }
-
-                        foldGroundTruth.add(groundTruth);
-
-                        out.append('\n');
                     }
 
-                    // add the approx. optimal tau to the dictionary
-                    TauOptimization tOpt = new TauOptimization();
-                    double optTau = tOpt.tauGridSearch(foldConfidences, foldGroundTruth,
-                            new UncertainHammingLoss(), .5, true);
+                    Double v = new Double(measure.getValue());
 
-                    if (results.containsKey("tau")) {
-                        results.get("tau").add(optTau);
+                    if (results.containsKey(k)) {
+                        results.get(k).add(v);
                     } else {
-                        ArrayList<Double> l = new ArrayList<>();
-                        l.add(optTau);
-                        results.put("tau", l);
+                        List<Double> r = new ArrayList<Double>();
+                        r.add(v);
+                        results.put(k, r);
                     }
+                }
 
-                    // add measures for the current fold to the dictionary
-                    for (Measure measure : this.measures) {
-                        measure.reset();
-                        String k = measure.getName();
-                        System.out.println("adding measure");
-                        System.out.println(k);
+                assert foldGroundTruth.size() > 0;
+            });
+        }
 
-                        if (measure instanceof UncertainHammingLoss) {
-                            ((UncertainHammingLoss) measure).setTau(optTau);
-                            ((UncertainHammingLoss) measure).setOmega(1./3);
-                        }
+        // post-process measures that have been obtained fold-wise
+        for (String k : results.keySet()) {
+            report.println(k);
+            Double[] d_values = new Double[someFolds];
+            results.get(k).toArray(d_values);
+            double[] values = ArrayUtils.toPrimitive(d_values);
+            Mean m = new Mean();
+            double mean = m.evaluate(values, 0, values.length);
+            StandardDeviation sd = new StandardDeviation();
+
+            report.print(k);
+            report.print(": ");
+            report.print(mean);
+            report.print("+-");
+            report.println(sd.evaluate(values, mean));
+        }
 
-                        for (int h = 0; h < foldConfidences.size(); h++) {
-                            /* the threshold is only applicable for hamming loss, subset 0/1 loss etc */
-                            MultiLabelOutput mlOutput = new MultiLabelOutput(foldConfidences.get(h), .5);
-                            MultiLabelOutput gt = new MultiLabelOutput(foldGroundTruth.get(h), .5);
+        report.println("---------------------------------");
 
-                            measure.update(mlOutput, new GroundTruth(gt.getBipartition()));
-                        }
+        // evaluate measures on whole dataset, read back from the file written above
+        // TODO: write result of tau optimization to csv with its losses
+        PredictionMatrix predictions;
 
-                        if (measure instanceof UncertainLoss) {
-                            double ucr = ((UncertainLoss) measure).getUncertainty();
+        try (PredictionStore store = new PredictionStore(predictionsFile)) {
+            predictions = store.toPredictionMatrix();
+        }
 
-                            if (results.containsKey(k + " - uncertainty")) {
-                                results.get(k + " - uncertainty").add(ucr);
-                            } else {
-                                ArrayList<Double> l = new ArrayList<>();
-                                l.add(ucr);
-                                results.put(k + " - uncertainty", l);
-                            }
-                        }
+        // bootstrap confidence intervals over the predictions of all folds, at the tau optimal on all of them
+        if (predictions.getNumInstances() > 0) {
+            double bootstrapTau = new UncertaintyMarginSweep(predictions).sweep(1./3).getOptimalTau();
+            BootstrapResult bootstrap = new PoissonBootstrap(1000, 2018).run(predictions, bootstrapTau, 1./3);
 
-                        Double v = new Double(measure.getValue());
+            report.println("bootstrap (95% CI) at tau := " + bootstrapTau);
+            report.println(bootstrap);
+        }
 
-                        if (results.containsKey(k)) {
-                            results.get(k).add(v);
-                        } else {
-                            List<Double> r = new ArrayList<Double>();
-                            r.add(v);
-                            results.put(k, r);
-                        }
+        // the fold-wise taus above are optimized on the very fold they are evaluated on, nested
+        // cross-validation selects them on inner folds only; the models of the folds above are its outer models,
+        // so only the models of the inner folds are trained
+        NestedCrossValidation nested = new NestedCrossValidation(model, someFolds, 1./3);
+        report.println("nested cross-validation (tau selected on inner folds):");
+        report.println(executor != null
+                ? nested.run(data, executor, outerPredictions)
+                : nested.run(data, outerPredictions));
+
+        /*
+        double optTau = tOpt.tauGridSearch(confidences, groundTruth, new UncertainHammingLoss(), 1./3, true);
+        report.print(" /!\\ OPTIMAL TAU: ");
+        report.println(optTau);
+
+        if (this.measures.size() > 0) {
+            for (Measure measure : this.measures) {
+                measure.reset();
+                String k = measure.getName();
+
+                report.println("processing measure:");
+                report.println(k);
+
+                if (measure instanceof UncertainHammingLoss) {
+                    ((UncertainHammingLoss) measure).setTau(optTau);
+                }
+
+                for (int j = 0; j < allConfidences.size(); j++) {
+                    List<double[]> foldConfidences = allConfidences.get(j);
+                    List<double[]> foldGroundTruth = allGroundTruth.get(j);
+
+                    for (int h = 0; h < foldConfidences.size(); h++) {
+                        /-* the threshold is only applicable for hamming loss, subset 0/1 loss etc *-/
+                        MultiLabelOutput mlOutput = new MultiLabelOutput(foldConfidences.get(h), .5);
+                        MultiLabelOutput gt = new MultiLabelOutput(foldGroundTruth.get(h), .5);
+
+                        measure.update(mlOutput, new GroundTruth(gt.getBipartition()));
                     }
 
-                    allGroundTruth.add(foldGroundTruth);
-                    allConfidences.add(foldConfidences);
+                    if (measure instanceof UncertainLoss) {
+                        report.print("# uncertainty ratio: ");
+                        double ucr = ((UncertainLoss) measure).getUncertainty();
+                        report.println(ucr);
+                    }
 
-                    assert foldGroundTruth.size() > 0;
+                    Double v = new Double(measure.getValue());
 
-                } catch (Exception var14) {
-                    Logger.getLogger(Evaluator.class.getName()).log(Level.SEVERE, null, var14);
+                    if (results.containsKey(k)) {
+                        results.get(k).add(v);
+                    } else {
+                        List<Double> r = new ArrayList<Double>();
+                        r.add(v);
+                        results.put(k, r);
+                    }
                 }
-            }
 
-            // post-process measures that have been obtained fold-wise
-            for (String k : results.keySet()) {
-                System.out.println(k);
+                report.println("evaluating measure");
                 Double[] d_values = new Double[someFolds];
                 results.get(k).toArray(d_values);
+                report.println(results.get(k));
+                report.println(Utils.arrayToString(d_values));
                 double[] values = ArrayUtils.toPrimitive(d_values);
                 Mean m = new Mean();
                 double mean = m.evaluate(values, 0, values.length);
                 StandardDeviation sd = new StandardDeviation();
 
-                System.out.print(k);
-                System.out.print(": ");
-                System.out.print(mean);
-                System.out.print("+-");
-                System.out.println(sd.evaluate(values, mean));
+                report.print(k);
+                report.print(": ");
+                report.print(mean);
+                report.print("+-");
+                report.println(sd.evaluate(values, mean));
             }
-
-            System.out.println("---------------------------------");
-
-            /* save confidences (probabilistic predictions) to csv */
-            this.writeCSV(out.toString(), "results/predictions-" + dataset + ".csv");
-
-            // evaluate measures on whole dataset
-            // TODO: write result of tau optimization to csv with its losses
-            TauOptimization tOpt = new TauOptimization();
-
-            List<double[]> confidences = new ArrayList<>();
-            List<double[]> groundTruth = new ArrayList<>();
-
-            for (List<double[]> confs : allConfidences) {
-                for (int i = 0; i < confs.size(); i++) {
-                    confidences.add(confs.get(i));
-                }
-            }
-
-            for (List<double[]> grounds : allGroundTruth) {
-                for (int i = 0; i < grounds.size(); i++) {
-                    groundTruth.add(grounds.get(i));
-                }
-            }
-
-            /*
-            double optTau = tOpt.tauGridSearch(confidences, groundTruth, new UncertainHammingLoss(), 1./3, true);
-            System.out.print(" /!\\ OPTIMAL TAU: ");
-            System.out.println(optTau);
-
-            if (this.measures.size() > 0) {
-                for (Measure measure : this.measures) {
-                    measure.reset();
-                    String k = measure.getName();
-
-                    System.out.println("processing measure:");
-                    System.out.println(k);
-
-                    if (measure instanceof UncertainHammingLoss) {
-                        ((UncertainHammingLoss) measure).setTau(optTau);
-                    }
-
-                    for (int j = 0; j < allConfidences.size(); j++) {
-                        List<double[]> foldConfidences = allConfidences.get(j);
-                        List<double[]> foldGroundTruth = allGroundTruth.get(j);
-
-                        for (int h = 0; h < foldConfidences.size(); h++) {
-                            /-* the threshold is only applicable for hamming loss, subset 0/1 loss etc *-/
-                            MultiLabelOutput mlOutput = new MultiLabelOutput(foldConfidences.get(h), .5);
-                            MultiLabelOutput gt = new MultiLabelOutput(foldGroundTruth.get(h), .5);
-
-                            measure.update(mlOutput, new GroundTruth(gt.getBipartition()));
-                        }
-
-                        if (measure instanceof UncertainLoss) {
-                            System.out.print("# uncertainty ratio: ");
-                            double ucr = ((UncertainLoss) measure).getUncertainty();
-                            System.out.println(ucr);
-                        }
-
-                        Double v = new Double(measure.getValue());
-
-                        if (results.containsKey(k)) {
-                            results.get(k).add(v);
-                        } else {
-                            List<Double> r = new ArrayList<Double>();
-                            r.add(v);
-                            results.put(k, r);
-                        }
-                    }
-
-                    System.out.println("evaluating measure");
-                    Double[] d_values = new Double[someFolds];
-                    results.get(k).toArray(d_values);
-                    System.out.println(results.get(k));
-                    System.out.println(Utils.arrayToString(d_values));
-                    double[] values = ArrayUtils.toPrimitive(d_values);
-                    Mean m = new Mean();
-                    double mean = m.evaluate(values, 0, values.length);
-                    StandardDeviation sd = new StandardDeviation();
-
-                    System.out.print(k);
-                    System.out.print(": ");
-                    System.out.print(mean);
-                    System.out.print("+-");
-                    System.out.println(sd.evaluate(values, mean));
-                }
-            } else {
-                // evaluation[i] = this.evaluate(clone, mlTest, mlTrain);
-            }
-            */
+        } else {
+            // evaluation[i] = this.evaluate(clone, mlTest, mlTrain);
         }
+        */
     }
 
     public static void main(String[] args) throws Exception {
         // System.setErr(new PrintStream(new File("errors.txt")));
-        Experiment experiment = new UHLExperiment();
+        UHLExperiment experiment = new UHLExperiment();
+
+        // `<heap budget in MB> <number of cores>` runs the data sets concurrently within these budgets
+        if (args.length == 2) {
+            experiment.setScheduler(new DatasetScheduler(Long.parseLong(args[0]) << 20, Integer.parseInt(args[1])));
+        }
+
         experiment.runExperiment();
     }
 }
@@ -0,0 +1,384 @@
+package com.cs_pum.uncertain_mlc.io;
+
+import com.cs_pum.uncertain_mlc.common.LabelMatrix;
+import com.cs_pum.uncertain_mlc.common.LabelRanking;
+import com.cs_pum.uncertain_mlc.common.LabelRankings;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Label space reduction (see `LabelSpaceReduction`) directly on ARFF files, without loading the data set.
+ *
+ * The first pass reads the labels of every instance into a `LabelMatrix` (one bit per label and instance), which
+ * the retained labels are selected on. The second pass copies the file line by line, dropping the attribute
+ * declarations and values of all other labels. Sparse rows stay sparse, their indices are remapped. Only the
+ * label matrix and the current line are held in memory, so data sets of any number of features can be reduced
+ * within a small heap.
+ *
+ * Labels are either the first or the last `numLabels` attributes, as for `MultiLabelInstances`. The number of
+ * labels in a meka relation name (`-C <n>`) is updated to the retained number.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-25
+ */
+public class ArffLabelReduction {
+    private static final Pattern MEKA_LABEL_COUNT = Pattern.compile("-C\\s+(-?)\\d+");
+
+    private final String fileName;
+    private final int numLabels;
+    private final boolean labelsFirst;
+    private LabelMatrix labels = null;
+    private int numAttributes = -1;
+
+    /**
+     * @param fileName ARFF file to reduce
+     * @param numLabels number of labels of the data set
+     * @param labelsFirst indicates if labels or attributes are at the start of the data section
+     *                    (mulan datasets should have "false", meka data sets should have "true")
+     */
+    public ArffLabelReduction(String fileName, int numLabels, boolean labelsFirst) {
+        if (numLabels < 1) {
+            throw new IllegalArgumentException("number of labels needs to be >= 1");
+        }
+
+        this.fileName = fileName;
+        this.numLabels = numLabels;
+        this.labelsFirst = labelsFirst;
+    }
+
+    /**
+     * Reads the labels of all instances (first pass), once.
+     *
+     * @return labels of the data set
+     * @throws IOException if the file can not be read or is malformed
+     */
+    public LabelMatrix getLabels() throws IOException {
+        if (this.labels != null) {
+            return this.labels;
+        }
+
+        long[][] columns = new long[this.numLabels][16];
+        int numInstances = 0;
+
+        try (BufferedReader in = new BufferedReader(new FileReader(this.fileName))) {
+            int labelStart = this.readHeader(in, null, null);
+            String line;
+
+            while ((line = in.readLine()) != null) {
+                if (isSkipped(line)) {
+                    continue;
+                }
+
+                if (numInstances == columns[0].length * 64) {
+                    for (int j = 0; j < this.numLabels; j++) {
+                        columns[j] = Arrays.copyOf(columns[j], columns[j].length * 2);
+                    }
+                }
+
+                final int instance = numInstances;
+                final long[][] target = columns;
+
+                forEachValue(line, (index, value) -> {
+                    int j = index - labelStart;
+
+                    if (j >= 0 && j < this.numLabels && isRelevant(value)) {
+                        target[j][instance >>> 6] |= 1L << instance;
+                    }
+
+                    return value;
+                }, null);
+
+                numInstances++;
+            }
+        }
+
+        this.labels = LabelMatrix.fromColumns(columns, numInstances);
+
+        return this.labels;
+    }
+
+    /**
+     * Writes the data set with the `k` most frequent labels.
+     */
+    public int[] reduce(String outFile, int numLabelsToKeep) throws IOException {
+        return this.reduce(outFile, numLabelsToKeep, LabelRankings.frequency());
+    }
+
+    /**
+     * Writes the data set with `k` labels selected by a ranking (second pass, after `getLabels()`).
+     *
+     * @param outFile ARFF file to write
+     * @param numLabelsToKeep number of labels to retain
+     * @param ranking criterion the retained labels are selected by
+     * @return indices of the retained labels
+     * @throws IOException if a file can not be read or written, or the input is malformed
+     */
+    public int[] reduce(String outFile, int numLabelsToKeep, LabelRanking ranking) throws IOException {
+        int[] kept = ranking.select(this.getLabels(), numLabelsToKeep);
+        boolean[] keepLabels = new boolean[this.numLabels];
+
+        for (int j : kept) {
+            keepLabels[j] = true;
+        }
+
+        try (BufferedReader in = new BufferedReader(new FileReader(this.fileName));
+             BufferedWriter out = new BufferedWriter(new FileWriter(outFile))) {
+            int labelStart = this.readHeader(in, out, keepLabels);
+            int[] newIndex = new int[this.numAttributes];
+            int index = 0;
+
+            for (int a = 0; a < this.numAttributes; a++) {
+                int j = a - labelStart;
+                boolean dropped = j >= 0 && j < this.numLabels && !keepLabels[j];
+                newIndex[a] = dropped ? -1 : index++;
+            }
+
+            String line;
+            StringBuilder reduced = new StringBuilder();
+
+            while ((line = in.readLine()) != null) {
+                if (isSkipped(line)) {
+                    out.write(line);
+                    out.newLine();
+                    continue;
+                }
+
+                reduced.setLength(0);
+                forEachValue(line, (a, value) -> newIndex[a] < 0 ? null : value, new RowWriter(reduced, newIndex));
+                out.write(reduced.toString());
+                out.newLine();
+            }
+        }
+
+        return kept;
+    }
+
+    /**
+     * Reads the header up to `@data`, optionally copying it without the dropped label attributes.
+     *
+     * @return index of the first label attribute
+     */
+    private int readHeader(BufferedReader in, BufferedWriter out, boolean[] keepLabels) throws IOException {
+        List<String> attributes = new ArrayList<>();
+        List<String> before = new ArrayList<>();
+        String line;
+
+        while ((line = in.readLine()) != null) {
+            String keyword = line.trim().toLowerCase(Locale.ROOT);
+
+            if (keyword.startsWith("@attribute")) {
+                attributes.add(line);
+            } else if (keyword.startsWith("@data")) {
+                break;
+            } else if (attributes.isEmpty()) {
+                before.add(line);
+            }
+        }
+
+        if (line == null) {
+            throw new IOException(this.fileName + " has no @data section");
+        }
+
+        if (attributes.size() < this.numLabels) {
+            throw new IOException(this.fileName + " has fewer attributes than labels");
+        }
+
+        this.numAttributes = attributes.size();
+        int labelStart = this.labelsFirst ? 0 : this.numAttributes - this.numLabels;
+
+        if (out != null) {
+            int numKept = 0;
+
+            for (boolean keep : keepLabels) {
+                numKept += keep ? 1 : 0;
+            }
+
+            for (String header : before) {
+                if (header.trim().toLowerCase(Locale.ROOT).startsWith("@relation")) {
+                    Matcher matcher = MEKA_LABEL_COUNT.matcher(header);
+                    header = matcher.replaceFirst("-C " + "$1" + numKept);
+                }
+
+                out.write(header);
+                out.newLine();
+            }
+
+            for (int a = 0; a < this.numAttributes; a++) {
+                int j = a - labelStart;
+
+                if (j < 0 || j >= this.numLabels || keepLabels[j]) {
+                    out.write(attributes.get(a));
+                    out.newLine();
+                }
+            }
+
+            out.newLine();
+            out.write(line);
+            out.newLine();
+        }
+
+        return labelStart;
+    }
+
+    private static boolean isSkipped(String line) {
+        String trimmed = line.trim();
+
+        return trimmed.isEmpty() || trimmed.charAt(0) == '%';
+    }
+
+    private static boolean isRelevant(String value) {
+        String v = value.trim();
+
+        if (v.length() > 1 && (v.charAt(0) == '\'' || v.charAt(0) == '"')) {
+            v = v.substring(1, v.length() - 1);
+        }
+
+        try {
+            return Double.parseDouble(v) >= .5;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Maps a value of a row to the value to write, or null to drop it.
+     */
+    private interface ValueMapper {
+        String map(int index, String value);
+    }
+
+    /**
+     * Calls the mapper for every value of a dense or sparse row, and passes the mapped values to the writer if
+     * given. Quoted values may contain commas.
+     */
+    private static void forEachValue(String line, ValueMapper mapper, RowWriter writer) throws IOException {
+        String row = line.trim();
+        boolean sparse = row.charAt(0) == '{';
+        int end = sparse ? row.indexOf('}') : row.length();
+
+        if (end < 0) {
+            throw new IOException("malformed sparse row: " + line);
+        }
+
+        if (writer != null) {
+            writer.begin(sparse);
+        }
+
+        int position = sparse ? 1 : 0;
+        int index = 0;
+
+        while (position < end) {
+            int next = nextSeparator(row, position, end);
+            String field = row.substring(position, next).trim();
+            position = next + 1;
+
+            if (field.isEmpty()) {
+                continue;
+            }
+
+            String value = field;
+
+            if (sparse) {
+                int space = 0;
+
+                while (space < field.length() && !Character.isWhitespace(field.charAt(space))) {
+                    space++;
+                }
+
+                index = Integer.parseInt(field.substring(0, space));
+                value = field.substring(space).trim();
+            }
+
+            String mapped = mapper.map(index, value);
+
+            if (writer != null && mapped != null) {
+                writer.add(index, mapped);
+            }
+
+            index++;
+        }
+
+        if (writer != null) {
+            // instance weights and anything else after a sparse row are kept as is
+            writer.end(sparse ? row.substring(end + 1) : "");
+        }
+    }
+
+    private static int nextSeparator(String row, int from, int end) {
+        char quote = 0;
+
+        for (int i = from; i < end; i++) {
+            char c = row.charAt(i);
+
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == ',') {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    /**
+     * Writes the retained values of a row, with remapped indices for sparse rows.
+     */
+    private static class RowWriter {
+        private final StringBuilder out;
+        private final int[] newIndex;
+        private boolean sparse;
+        private boolean first;
+
+        RowWriter(StringBuilder out, int[] newIndex) {
+            this.out = out;
+            this.newIndex = newIndex;
+        }
+
+        void begin(boolean sparse) {
+            this.sparse = sparse;
+            this.first = true;
+
+            if (sparse) {
+                this.out.append('{');
+            }
+        }
+
+        void add(int index, String value) {
+            if (!this.first) {
+                this.out.append(',');
+            }
+
+            if (this.sparse) {
+                this.out.append(this.newIndex[index]).append(' ');
+            }
+
+            this.out.append(value);
+            this.first = false;
+        }
+
+        void end(String suffix) {
+            if (this.sparse) {
+                this.out.append('}');
+            }
+
+            this.out.append(suffix);
+        }
+    }
+}
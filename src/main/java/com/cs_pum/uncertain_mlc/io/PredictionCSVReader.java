@@ -0,0 +1,485 @@
+package com.cs_pum.uncertain_mlc.io;
+
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+
+/**
+ * Parser for prediction CSV files (columns `pred_*`, optionally `fold`, followed by the ground truth, see
+ * `ConvertPredictions`) that works directly on the bytes of the file.
+ *
+ * Cells are parsed in place into primitive arrays with a hand-written number parser, so apart from the header no
+ * strings are created. `stream(…)` reads the file through a fixed-size buffer and hands every row to a consumer,
+ * reusing the same arrays for all rows, so the file is never held in memory as a whole. `readParallel(…)` splits
+ * the file into chunks at line breaks, maps and parses the chunks in parallel and concatenates them in order.
+ *
+ * Cells must not be quoted.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-23
+ */
+public class PredictionCSVReader {
+    /**
+     * Receives the rows of a prediction file.
+     */
+    public interface RowConsumer {
+        /**
+         * @param confidences confidence per label (only valid during the call)
+         * @param groundTruth ground truth per label (only valid during the call)
+         * @param fold fold of the row, or -1 if the file has no fold column
+         */
+        void accept(double[] confidences, double[] groundTruth, int fold);
+    }
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    /* largest mantissa that is exactly representable as double */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    /* powers of ten that are exactly representable as double */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final String fileName;
+    private final String[] labelNames;
+    private final boolean hasFold;
+    /* offset of the first row */
+    private final long dataStart;
+
+    /**
+     * Opens a prediction file and parses its header.
+     *
+     * @param fileName csv file to read
+     * @throws IOException if the file can not be read or has no valid header
+     */
+    public PredictionCSVReader(String fileName) throws IOException {
+        this.fileName = fileName;
+
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            StringBuilder header = new StringBuilder();
+            int c;
+
+            while ((c = file.read()) != -1 && c != '\n') {
+                header.append((char) c);
+            }
+
+            this.dataStart = file.getFilePointer();
+            String line = new String(header.toString().getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+            String[] columns = line.trim().split(",");
+            int predictionCount = 0;
+
+            while (predictionCount < columns.length && columns[predictionCount].startsWith("pred_")) {
+                predictionCount++;
+            }
+
+            this.hasFold = predictionCount < columns.length && columns[predictionCount].equals("fold");
+            int groundTruthStart = predictionCount + (this.hasFold ? 1 : 0);
+
+            if (predictionCount == 0 || columns.length - groundTruthStart != predictionCount) {
+                throw new IOException(fileName + " does not have a header of the form <pred_*>,[fold,]<labels>");
+            }
+
+            this.labelNames = Arrays.copyOfRange(columns, groundTruthStart, columns.length);
+        }
+    }
+
+    public String[] getLabelNames() {
+        return this.labelNames.clone();
+    }
+
+    public int getNumLabels() {
+        return this.labelNames.length;
+    }
+
+    public boolean hasFoldColumn() {
+        return this.hasFold;
+    }
+
+    /**
+     * Parses all rows sequentially and hands them to `consumer`.
+     *
+     * @param consumer consumer of the rows
+     * @return number of rows
+     * @throws IOException if the file can not be read or a row is malformed
+     */
+    public long stream(RowConsumer consumer) throws IOException {
+        int numLabels = this.labelNames.length;
+        double[] confidences = new double[numLabels];
+        double[] groundTruth = new double[numLabels];
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long rows = 0;
+
+        try (RandomAccessFile file = new RandomAccessFile(this.fileName, "r")) {
+            FileChannel channel = file.getChannel();
+            channel.position(this.dataStart);
+            boolean eof = false;
+
+            while (!eof) {
+                eof = channel.read(buffer) == -1;
+                int limit = buffer.position();
+                int lineStart = 0;
+
+                for (int k = 0; k < limit; k++) {
+                    if (buffer.get(k) == '\n') {
+                        rows += this.parseRow(buffer, lineStart, k, confidences, groundTruth, consumer);
+                        lineStart = k + 1;
+                    }
+                }
+
+                if (eof && lineStart < limit) {
+                    rows += this.parseRow(buffer, lineStart, limit, confidences, groundTruth, consumer);
+                    lineStart = limit;
+                }
+
+                if (lineStart == 0 && limit == buffer.capacity()) {
+                    // a single line does not fit into the buffer
+                    buffer.flip();
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer);
+                    continue;
+                }
+
+                // keep the incomplete last line for the next read
+                buffer.limit(limit).position(lineStart);
+                buffer.compact();
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Parses the file in `numChunks` chunks in parallel on the common fork-join pool. Fold ids are not kept.
+     *
+     * @param numChunks number of chunks to split the file into
+     * @return predictions of all rows in file order
+     * @throws IOException if the file can not be read or a row is malformed
+     */
+    public PredictionMatrix readParallel(int numChunks) throws IOException {
+        long[] boundaries = this.chunkBoundaries(numChunks);
+        ChunkResult[] chunks = new ChunkResult[boundaries.length - 1];
+        IOException[] failure = new IOException[1];
+
+        IntStream.range(0, chunks.length).parallel().forEach(c -> {
+            try {
+                chunks[c] = this.parseChunk(boundaries[c], boundaries[c + 1]);
+            } catch (IOException e) {
+                synchronized (failure) {
+                    failure[0] = e;
+                }
+            }
+        });
+
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        int numLabels = this.labelNames.length;
+        int numRows = 0;
+
+        for (ChunkResult chunk : chunks) {
+            numRows += chunk.rows;
+        }
+
+        double[] confidences = new double[numRows * numLabels];
+        long[] groundTruth = new long[PredictionMatrix.words(numRows, numLabels)];
+        int offset = 0;
+
+        for (ChunkResult chunk : chunks) {
+            int numValues = chunk.rows * numLabels;
+            System.arraycopy(chunk.confidences, 0, confidences, offset, numValues);
+
+            for (int w = 0; w < chunk.groundTruth.length; w++) {
+                long word = chunk.groundTruth[w];
+
+                while (word != 0) {
+                    PredictionMatrix.setBit(groundTruth, offset + (w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+
+            offset += numValues;
+        }
+
+        return new PredictionMatrix(confidences, groundTruth, numRows, numLabels);
+    }
+
+    /**
+     * Parsed rows of a chunk, bits and values indexed relative to the chunk.
+     */
+    private static class ChunkResult {
+        double[] confidences;
+        long[] groundTruth;
+        int rows = 0;
+    }
+
+    private ChunkResult parseChunk(long from, long to) throws IOException {
+        int numLabels = this.labelNames.length;
+        ChunkResult chunk = new ChunkResult();
+        chunk.confidences = new double[1024 * numLabels];
+        chunk.groundTruth = new long[PredictionMatrix.words(1024, numLabels)];
+
+        if (to <= from) {
+            return chunk;
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(this.fileName, "r")) {
+            ByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            int limit = buffer.limit();
+            int lineStart = 0;
+
+            RowConsumer collect = (confidences, groundTruth, fold) -> {
+                int capacity = chunk.confidences.length / numLabels;
+
+                if (chunk.rows == capacity) {
+                    chunk.confidences = Arrays.copyOf(chunk.confidences, 2 * capacity * numLabels);
+                    chunk.groundTruth = Arrays.copyOf(chunk.groundTruth,
+                            PredictionMatrix.words(2 * capacity, numLabels));
+                }
+
+                int offset = chunk.rows * numLabels;
+                System.arraycopy(confidences, 0, chunk.confidences, offset, numLabels);
+
+                for (int j = 0; j < numLabels; j++) {
+                    if (groundTruth[j] >= .5) {
+                        PredictionMatrix.setBit(chunk.groundTruth, offset + j);
+                    }
+                }
+
+                chunk.rows++;
+            };
+
+            double[] confidences = new double[numLabels];
+            double[] groundTruth = new double[numLabels];
+
+            for (int k = 0; k < limit; k++) {
+                if (buffer.get(k) == '\n') {
+                    this.parseRow(buffer, lineStart, k, confidences, groundTruth, collect);
+                    lineStart = k + 1;
+                }
+            }
+
+            if (lineStart < limit) {
+                this.parseRow(buffer, lineStart, limit, confidences, groundTruth, collect);
+            }
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Splits the rows into byte ranges of roughly equal size, each starting right after a line break.
+     */
+    private long[] chunkBoundaries(int numChunks) throws IOException {
+        if (numChunks < 1) {
+            throw new IllegalArgumentException("number of chunks needs to be >= 1");
+        }
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(this.dataStart);
+
+        try (RandomAccessFile file = new RandomAccessFile(this.fileName, "r")) {
+            long length = file.length();
+            long chunkSize = Math.max(1, (length - this.dataStart) / numChunks);
+
+            for (int c = 1; c < numChunks; c++) {
+                long position = Math.max(this.dataStart + c * chunkSize, boundaries.get(boundaries.size() - 1));
+                file.seek(position);
+                int b;
+
+                while ((b = file.read()) != -1 && b != '\n') {
+                    position++;
+                }
+
+                if (b == -1) {
+                    break;
+                }
+
+                boundaries.add(position + 1);
+            }
+
+            boundaries.add(length);
+        }
+
+        long[] result = new long[boundaries.size()];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses the row within `[from, to)` (without line break) into the given arrays and hands it to `consumer`.
+     *
+     * @return 1, or 0 if the line is empty
+     */
+    private int parseRow(ByteBuffer buffer, int from, int to, double[] confidences, double[] groundTruth,
+                         RowConsumer consumer) throws IOException {
+        if (to > from && buffer.get(to - 1) == '\r') {
+            to--;
+        }
+
+        if (to == from) {
+            return 0;
+        }
+
+        int numLabels = confidences.length;
+        int numColumns = 2 * numLabels + (this.hasFold ? 1 : 0);
+        int fold = -1;
+        int cellStart = from;
+
+        for (int column = 0; column < numColumns; column++) {
+            int cellEnd = cellStart;
+
+            while (cellEnd < to && buffer.get(cellEnd) != ',') {
+                cellEnd++;
+            }
+
+            if (cellEnd == to && column < numColumns - 1) {
+                throw new IOException("row has less than " + numColumns + " columns");
+            }
+
+            if (column < numLabels) {
+                confidences[column] = parseDouble(buffer, cellStart, cellEnd);
+            } else if (this.hasFold && column == numLabels) {
+                fold = (int) parseDouble(buffer, cellStart, cellEnd);
+            } else {
+                groundTruth[column - numColumns + numLabels] = parseDouble(buffer, cellStart, cellEnd);
+            }
+
+            cellStart = cellEnd + 1;
+        }
+
+        consumer.accept(confidences, groundTruth, fold);
+
+        return 1;
+    }
+
+    /**
+     * Parses a decimal number (e.g. `0.12345678`, `-3`, `1.0E-5`) from the bytes within `[from, to)`.
+     *
+     * Up to 18 significant digits are accumulated into a long. If the mantissa and the power of ten are both
+     * exactly representable as double, a single multiplication or division yields the correctly rounded result,
+     * which covers all numbers written by the experiments. Anything else (more digits, large exponents, `NaN`,
+     * malformed cells) falls back to `Double.parseDouble`, so the result always equals the one of the latter.
+     *
+     * @throws NumberFormatException if the cell is not a number
+     */
+    public static double parseDouble(ByteBuffer buffer, int from, int to) {
+        int i = from;
+
+        while (i < to && buffer.get(i) == ' ') {
+            i++;
+        }
+
+        while (to > i && buffer.get(to - 1) == ' ') {
+            to--;
+        }
+
+        int start = i;
+        boolean negative = false;
+
+        if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        boolean truncated = false;
+        byte b;
+
+        while (i < to && (b = buffer.get(i)) >= '0' && b <= '9') {
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits += mantissa == 0 ? 0 : 1;
+            } else {
+                exponent++;
+                truncated |= b != '0';
+            }
+
+            anyDigit = true;
+            i++;
+        }
+
+        if (i < to && buffer.get(i) == '.') {
+            i++;
+
+            while (i < to && (b = buffer.get(i)) >= '0' && b <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits += mantissa == 0 ? 0 : 1;
+                    exponent--;
+                } else {
+                    truncated |= b != '0';
+                }
+
+                anyDigit = true;
+                i++;
+            }
+        }
+
+        if (anyDigit && i < to && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+
+            if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negativeExponent = buffer.get(i) == '-';
+                i++;
+            }
+
+            int value = 0;
+            boolean anyExponentDigit = false;
+
+            while (i < to && (b = buffer.get(i)) >= '0' && b <= '9') {
+                value = Math.min(value * 10 + (b - '0'), 100000);
+                anyExponentDigit = true;
+                i++;
+            }
+
+            if (!anyExponentDigit) {
+                return fallback(buffer, start, to);
+            }
+
+            exponent += negativeExponent ? -value : value;
+        }
+
+        if (!anyDigit || i != to || truncated) {
+            return fallback(buffer, start, to);
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+
+        if (mantissa >= MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+            return fallback(buffer, start, to);
+        }
+
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+
+        return negative ? -value : value;
+    }
+
+    private static double fallback(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+
+        for (int k = 0; k < bytes.length; k++) {
+            bytes[k] = buffer.get(from + k);
+        }
+
+        return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+    }
+}
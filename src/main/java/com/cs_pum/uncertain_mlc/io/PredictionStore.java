@@ -0,0 +1,187 @@
+package com.cs_pum.uncertain_mlc.io;
+
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+
+/**
+ * Read-only view of a file written by `PredictionStoreWriter`. The file is mapped into memory and its sections
+ * are exposed as buffers on the mapping, so accessing a prediction neither parses text nor copies the file
+ * into the heap; pages are only loaded by the operating system when they are accessed.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-20
+ */
+public class PredictionStore implements Closeable {
+    private final RandomAccessFile file;
+    private final String[] labelNames;
+    private final int numLabels;
+    private final int numRows;
+    private final IntBuffer folds;
+    private final FloatBuffer confidences;
+    private final LongBuffer groundTruth;
+
+    /**
+     * Maps a prediction file into memory.
+     *
+     * @param fileName file written by `PredictionStoreWriter`
+     * @throws IOException if the file can not be read or is not a prediction file
+     */
+    public PredictionStore(String fileName) throws IOException {
+        this.file = new RandomAccessFile(fileName, "r");
+
+        try {
+            if (this.file.length() > Integer.MAX_VALUE) {
+                throw new IOException(fileName + " exceeds 2 GB and can not be mapped at once");
+            }
+
+            MappedByteBuffer mapped = this.file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                    this.file.length());
+            ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.remaining() < 16 || buffer.getInt() != PredictionStoreWriter.MAGIC) {
+                throw new IOException(fileName + " is not a prediction file");
+            }
+
+            int version = buffer.getInt();
+
+            if (version != PredictionStoreWriter.VERSION) {
+                throw new IOException(fileName + " has unsupported version " + version);
+            }
+
+            this.numLabels = buffer.getInt();
+            this.numRows = buffer.getInt();
+            this.labelNames = new String[this.numLabels];
+
+            for (int j = 0; j < this.numLabels; j++) {
+                byte[] name = new byte[buffer.getShort()];
+                buffer.get(name);
+                this.labelNames[j] = new String(name, StandardCharsets.UTF_8);
+            }
+
+            int offset = PredictionStoreWriter.align(buffer.position());
+            this.folds = section(buffer, offset, 4L * this.numRows).asIntBuffer();
+            offset += PredictionStoreWriter.align(4L * this.numRows);
+
+            int numValues = this.numRows * this.numLabels;
+            this.confidences = section(buffer, offset, 4L * numValues).asFloatBuffer();
+            offset += PredictionStoreWriter.align(4L * numValues);
+
+            this.groundTruth = section(buffer, offset,
+                    8L * PredictionMatrix.words(this.numRows, this.numLabels)).asLongBuffer();
+        } catch (IOException | RuntimeException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, int offset, long size) throws IOException {
+        if (offset + size > buffer.limit()) {
+            throw new IOException("prediction file is truncated");
+        }
+
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.limit((int) (offset + size));
+
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public String[] getLabelNames() {
+        return this.labelNames.clone();
+    }
+
+    public int getNumLabels() {
+        return this.numLabels;
+    }
+
+    public int getNumRows() {
+        return this.numRows;
+    }
+
+    public int getFold(int row) {
+        return this.folds.get(row);
+    }
+
+    public float getConfidence(int row, int label) {
+        return this.confidences.get(row * this.numLabels + label);
+    }
+
+    public boolean isRelevant(int row, int label) {
+        int index = row * this.numLabels + label;
+
+        return (this.groundTruth.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * @return row-major confidences on the mapping
+     */
+    public FloatBuffer getConfidences() {
+        return this.confidences.duplicate();
+    }
+
+    /**
+     * @return packed ground truth on the mapping, in the layout of `PredictionMatrix`
+     */
+    public LongBuffer getGroundTruth() {
+        return this.groundTruth.duplicate();
+    }
+
+    /**
+     * Copies all predictions into a matrix, e.g. for the kernels of the losses. The confidences are widened to
+     * double, the ground truth is copied as is.
+     *
+     * @return predictions of all rows
+     */
+    public PredictionMatrix toPredictionMatrix() {
+        int numValues = this.numRows * this.numLabels;
+        double[] values = new double[numValues];
+        long[] bits = new long[PredictionMatrix.words(this.numRows, this.numLabels)];
+
+        for (int k = 0; k < numValues; k++) {
+            values[k] = this.confidences.get(k);
+        }
+
+        this.groundTruth.duplicate().get(bits);
+
+        return new PredictionMatrix(values, bits, this.numRows, this.numLabels);
+    }
+
+    /**
+     * Adds all predictions to lists as used by the experiments (ground truth as 0/1).
+     */
+    public void readInto(List<double[]> confidences, List<double[]> groundTruth) {
+        for (int i = 0; i < this.numRows; i++) {
+            double[] c = new double[this.numLabels];
+            double[] gt = new double[this.numLabels];
+
+            for (int j = 0; j < this.numLabels; j++) {
+                c[j] = this.getConfidence(i, j);
+                gt[j] = this.isRelevant(i, j) ? 1 : 0;
+            }
+
+            confidences.add(c);
+            groundTruth.add(gt);
+        }
+    }
+
+    /**
+     * Closes the file. The mapping stays valid until the buffers are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+}
@@ -0,0 +1,370 @@
+package com.cs_pum.uncertain_mlc.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+
+/**
+ * Writes predictions in the binary format read by `PredictionStore`, replacing the CSV files with decimal
+ * confidences. Rows are streamed while they are added: they are collected in batches of primitive arrays (4 bytes
+ * per confidence, 1 bit per ground truth label), which are passed through a bounded queue to a writer thread that
+ * encodes them. Making predictions and encoding them thus overlap, and the memory used does not depend on the
+ * number of rows; if the writer thread falls behind, adding rows blocks.
+ *
+ * As the sections of the file are sized by the number of rows, the writer thread appends each section to a
+ * spill file of its own next to the file, and the spill files are concatenated behind the header when the writer
+ * is closed. The rows are thus written twice, once to the spill files and once to the file, in exchange for a
+ * columnar file that `PredictionStore` maps without copying.
+ *
+ * The file consists of the following sections, all little-endian and aligned to 8 bytes:
+ *
+ * - header: magic number, format version, number of labels, number of rows, and the label names (each as the
+ *   length of its UTF-8 encoding as short, followed by the bytes)
+ * - fold id per row (int)
+ * - confidences as row-major matrix (float), `numLabels` consecutive values per row
+ * - ground truth as bitset (long), bit `i * numLabels + j` is set iff label `j` of row `i` is relevant
+ *
+ * @author Christian Schulze
+ * @since  2018-07-20
+ */
+public class PredictionStoreWriter implements Closeable {
+    static final int MAGIC = 0x554d4c43;
+    static final int VERSION = 1;
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Batch END = new Batch(0, 0);
+
+    /**
+     * Rows passed to the writer thread at once.
+     */
+    private static class Batch {
+        final int[] folds;
+        final float[] confidences;
+        final boolean[] groundTruth;
+        int numRows = 0;
+
+        Batch(int capacity, int numLabels) {
+            this.folds = new int[capacity];
+            this.confidences = new float[capacity * numLabels];
+            this.groundTruth = new boolean[capacity * numLabels];
+        }
+    }
+
+    /**
+     * One section of the file, buffered and appended to its spill file.
+     */
+    private static class Spill implements Closeable {
+        final File file;
+        final FileChannel channel;
+        final ByteBuffer buffer;
+
+        Spill(File target, String section, int rowSize) throws IOException {
+            this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, rowSize)).order(ByteOrder.LITTLE_ENDIAN);
+            File directory = target.getAbsoluteFile().getParentFile();
+            this.file = File.createTempFile(target.getName() + ".", "." + section, directory);
+            this.channel = new RandomAccessFile(this.file, "rw").getChannel();
+        }
+
+        ByteBuffer reserve(int bytes) throws IOException {
+            if (this.buffer.remaining() < bytes) {
+                this.flush();
+            }
+
+            return this.buffer;
+        }
+
+        void flush() throws IOException {
+            this.buffer.flip();
+            writeFully(this.channel, this.buffer);
+            this.buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                this.channel.close();
+            } finally {
+                this.file.delete();
+            }
+        }
+    }
+
+    private final String fileName;
+    private final String[] labelNames;
+    private final int numLabels;
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Spill folds;
+    private final Spill confidences;
+    private final Spill groundTruth;
+    private final Thread writer;
+    private volatile IOException failure = null;
+    private Batch batch;
+    private int numRows = 0;
+    private boolean closed = false;
+
+    /**
+     * @param fileName file to write to, it is only created when the writer is closed
+     * @param labelNames names of the labels
+     * @throws IOException if the spill files can not be created
+     */
+    public PredictionStoreWriter(String fileName, String[] labelNames) throws IOException {
+        this.fileName = fileName;
+        this.labelNames = labelNames.clone();
+        this.numLabels = labelNames.length;
+        this.batch = new Batch(BATCH_SIZE, this.numLabels);
+
+        File target = new File(fileName);
+        Spill folds = null;
+        Spill confidences = null;
+
+        try {
+            folds = new Spill(target, "folds", 4);
+            confidences = new Spill(target, "confidences", 4 * this.numLabels);
+            this.groundTruth = new Spill(target, "ground-truth", 8);
+        } catch (IOException e) {
+            closeAll(folds, confidences);
+            throw e;
+        }
+
+        this.folds = folds;
+        this.confidences = confidences;
+
+        this.writer = new Thread(this::writeBatches, "prediction-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Adds the prediction for one instance. The arrays are copied, so they may be reused by the caller.
+     *
+     * @param confidences confidence per label
+     * @param groundTruth ground truth per label (values >= .5 are considered relevant)
+     * @param fold fold the instance was predicted in
+     * @throws UncheckedIOException if writing the previous rows failed, or if interrupted while waiting for the
+     *                              writer thread
+     */
+    public void write(double[] confidences, double[] groundTruth, int fold) {
+        if (this.closed) {
+            throw new IllegalStateException("writer has been closed");
+        }
+
+        if (confidences.length != this.numLabels || groundTruth.length != this.numLabels) {
+            throw new IllegalArgumentException("prediction does not have " + this.numLabels + " labels");
+        }
+
+        if (this.failure != null) {
+            throw new UncheckedIOException(this.failure);
+        }
+
+        Batch batch = this.batch;
+        int offset = batch.numRows * this.numLabels;
+
+        for (int j = 0; j < this.numLabels; j++) {
+            batch.confidences[offset + j] = (float) confidences[j];
+            batch.groundTruth[offset + j] = groundTruth[j] >= .5;
+        }
+
+        batch.folds[batch.numRows++] = fold;
+        this.numRows++;
+
+        if (batch.numRows == BATCH_SIZE) {
+            try {
+                this.enqueue(batch);
+            } catch (InterruptedIOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            this.batch = new Batch(BATCH_SIZE, this.numLabels);
+        }
+    }
+
+    public int getNumRows() {
+        return this.numRows;
+    }
+
+    private void enqueue(Batch batch) throws InterruptedIOException {
+        try {
+            this.queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the writer thread");
+        }
+    }
+
+    /**
+     * Encodes the batches from the queue into the spill files, until the end of the rows is reached. After a
+     * failure, the remaining batches are only taken from the queue, so that adding rows never blocks forever.
+     */
+    private void writeBatches() {
+        // ground truth bits are a single stream over all rows, a word is written once it is complete
+        long word = 0;
+        int bit = 0;
+
+        try {
+            Batch batch;
+
+            while ((batch = this.queue.take()) != END) {
+                if (this.failure != null) {
+                    continue;
+                }
+
+                try {
+                    for (int i = 0; i < batch.numRows; i++) {
+                        this.folds.reserve(4).putInt(batch.folds[i]);
+                        ByteBuffer confidences = this.confidences.reserve(4 * this.numLabels);
+
+                        for (int j = 0; j < this.numLabels; j++) {
+                            int k = i * this.numLabels + j;
+                            confidences.putFloat(batch.confidences[k]);
+
+                            if (batch.groundTruth[k]) {
+                                word |= 1L << bit;
+                            }
+
+                            if (++bit == 64) {
+                                this.groundTruth.reserve(8).putLong(word);
+                                word = 0;
+                                bit = 0;
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    this.failure = e;
+                }
+            }
+
+            if (this.failure == null) {
+                if (bit > 0) {
+                    this.groundTruth.reserve(8).putLong(word);
+                }
+
+                this.folds.flush();
+                this.confidences.flush();
+                this.groundTruth.flush();
+            }
+        } catch (IOException e) {
+            this.failure = e;
+        } catch (InterruptedException e) {
+            this.failure = new InterruptedIOException("writer thread was interrupted");
+        }
+    }
+
+    /**
+     * Writes the remaining rows, and the file from the header and the spill files, which are deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+
+        try {
+            if (this.batch.numRows > 0) {
+                this.enqueue(this.batch);
+            }
+
+            this.enqueue(END);
+
+            try {
+                this.writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for the writer thread");
+            }
+
+            if (this.failure != null) {
+                throw this.failure;
+            }
+
+            this.writeFile();
+        } finally {
+            closeAll(this.folds, this.confidences, this.groundTruth);
+        }
+    }
+
+    private void writeFile() throws IOException {
+        byte[][] names = new byte[this.numLabels][];
+        int headerSize = 16;
+
+        for (int j = 0; j < this.numLabels; j++) {
+            names[j] = this.labelNames[j].getBytes(StandardCharsets.UTF_8);
+            headerSize += 2 + names[j].length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(align(headerSize)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(this.numLabels).putInt(this.numRows);
+
+        for (byte[] name : names) {
+            header.putShort((short) name.length).put(name);
+        }
+
+        header.rewind();
+
+        try (RandomAccessFile file = new RandomAccessFile(this.fileName, "rw")) {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            writeFully(channel, header);
+
+            for (Spill section : new Spill[]{this.folds, this.confidences, this.groundTruth}) {
+                long size = section.channel.size();
+                long position = 0;
+
+                while (position < size) {
+                    position += section.channel.transferTo(position, size - position, channel);
+                }
+
+                // sections are aligned to 8 bytes, the file is zero-filled when extended
+                channel.position(channel.position() + align(size) - size);
+            }
+
+            file.setLength(channel.position());
+        }
+    }
+
+    private static void closeAll(Closeable... closeables) throws IOException {
+        IOException failure = null;
+
+        for (Closeable closeable : closeables) {
+            try {
+                if (closeable != null) {
+                    closeable.close();
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static int align(long size) {
+        long aligned = (size + 7) & ~7L;
+
+        if (aligned > Integer.MAX_VALUE) {
+            throw new IllegalStateException("section exceeds 2 GB");
+        }
+
+        return (int) aligned;
+    }
+}
@@ -0,0 +1,91 @@
+package com.cs_pum.uncertain_mlc.losses;
+
+import mulan.evaluation.measure.Measure;
+
+
+/**
+ * Uncertain hamming loss with exponentially decaying weights: with every new prediction the weight of all
+ * previous ones is multiplied by `decay`, so a prediction `halfLife` predictions ago counts half as much as the
+ * latest one. Only the decayed sums of the counts and of the weights are kept.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-17
+ */
+public class DecayedUncertainHammingLoss extends OnlineUncertainLoss {
+    private double decay;
+    private double weight = 0;
+    private double errorSum = 0;
+    private double uncertainSum = 0;
+
+    /**
+     * @param halfLife number of predictions after which the weight of a prediction is halved
+     */
+    public DecayedUncertainHammingLoss(double halfLife) {
+        if (halfLife <= 0) {
+            throw new IllegalArgumentException("half-life needs to be > 0.");
+        }
+
+        this.decay = Math.pow(.5, 1 / halfLife);
+    }
+
+    public DecayedUncertainHammingLoss(double halfLife, double tau, double omega) {
+        this(halfLife);
+        setOmega(omega);
+        setTau(tau);
+    }
+
+    public String getName() {
+        return "Decayed Uncertain Hamming Loss";
+    }
+
+    /**
+     * @return factor the weights are multiplied by per prediction
+     */
+    public double getDecay() {
+        return this.decay;
+    }
+
+    @Override
+    protected void add(int errors, int uncertain) {
+        this.weight = this.weight * this.decay + 1;
+        this.errorSum = this.errorSum * this.decay + errors;
+        this.uncertainSum = this.uncertainSum * this.decay + uncertain;
+    }
+
+    @Override
+    protected double getWeight() {
+        return this.weight;
+    }
+
+    @Override
+    protected void clear() {
+        this.weight = 0;
+        this.errorSum = 0;
+        this.uncertainSum = 0;
+    }
+
+    /**
+     * @return decayed count of uncertain labels
+     */
+    public synchronized double getNoUncertain() {
+        return this.uncertainSum;
+    }
+
+    /**
+     * @return decayed count of certain, but wrongly predicted labels
+     */
+    public synchronized double getNoErrors() {
+        return this.errorSum;
+    }
+
+    public synchronized Measure makeCopy() {
+        DecayedUncertainHammingLoss copy = new DecayedUncertainHammingLoss(1);
+        this.copyParametersTo(copy);
+        copy.decay = this.decay;
+        copy.weight = this.weight;
+        copy.errorSum = this.errorSum;
+        copy.uncertainSum = this.uncertainSum;
+
+        return copy;
+    }
+}
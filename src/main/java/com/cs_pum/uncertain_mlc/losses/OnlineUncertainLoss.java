@@ -0,0 +1,168 @@
+package com.cs_pum.uncertain_mlc.losses;
+
+import mulan.classifier.MultiLabelOutput;
+import mulan.evaluation.GroundTruth;
+
+
+/**
+ * Base class of uncertain hamming losses for monitoring a stream of predictions, which in contrast to
+ * `UncertainHammingLoss` do not weigh all predictions seen so far equally (see `WindowedUncertainHammingLoss`
+ * and `DecayedUncertainHammingLoss`).
+ *
+ * Each instance is reduced to its number of wrongly predicted certain labels and its number of uncertain labels
+ * as soon as it arrives, i.e. with the tau in effect at that time. Changing tau (e.g. by
+ * `OnlineTauAdaptation`) thus only affects subsequent predictions, which is what a deployed model abstaining
+ * with that tau would have done, and the history never has to be scanned again. Omega only weighs the counts,
+ * so it can be changed at any time. Both updating and querying take O(1) per instance.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-17
+ */
+public abstract class OnlineUncertainLoss implements UncertainLoss {
+    private double tau = 1./3;
+    private double omega = 1.0;
+    private int numLabels = 0;
+    private final UncertainLossState instance = new UncertainLossState();
+
+    /**
+     * Adds the counts of one instance.
+     *
+     * @param errors number of certain, but wrongly predicted labels
+     * @param uncertain number of uncertain labels
+     */
+    protected abstract void add(int errors, int uncertain);
+
+    /**
+     * @return (effective) number of instances the loss is currently computed over
+     */
+    protected abstract double getWeight();
+
+    protected abstract void clear();
+
+    public synchronized double getTau() {
+        return tau;
+    }
+
+    public synchronized void setTau(double tau) {
+        if (tau <= 0 || tau > .5) {
+            throw new IllegalArgumentException("Tau needs to be > 0. and <= 0.5");
+        }
+
+        this.tau = tau;
+    }
+
+    public synchronized double getOmega() {
+        return omega;
+    }
+
+    public synchronized void setOmega(double omega) {
+        if (omega <= 0 || omega > .5) {
+            throw new IllegalArgumentException("Omega needs to be > 0. and <= 0.5");
+        }
+
+        this.omega = omega;
+    }
+
+    public synchronized int getNumLabels() {
+        return numLabels;
+    }
+
+    @Override
+    public String toString() {
+        return this.getName() + ": " + String.format("%.4f", this.getValue());
+    }
+
+    public synchronized double getValue() {
+        return (this.getNoErrors() + this.omega * this.getNoUncertain()) / (this.getWeight() * this.numLabels);
+    }
+
+    public double getIdealValue() {
+        return 0;
+    }
+
+    public synchronized double getUncertainty() {
+        return this.omega * this.getNoUncertain() / (this.getWeight() * this.numLabels);
+    }
+
+    public synchronized void update(MultiLabelOutput multiLabelOutput, GroundTruth groundTruth) {
+        double[] confidences = multiLabelOutput.getConfidences();
+        boolean[] bipartition = multiLabelOutput.getBipartition();
+        boolean[] trueLabels = groundTruth.getTrueLabels();
+        int errors = 0;
+        int uncertain = 0;
+
+        this.checkNumLabels(trueLabels.length);
+
+        for (int j = 0; j < trueLabels.length; j++) {
+            if (confidences[j] < this.tau || confidences[j] > 1 - this.tau) {
+                if (bipartition[j] != trueLabels[j]) {
+                    errors++;
+                }
+            } else {
+                uncertain++;
+            }
+        }
+
+        this.add(errors, uncertain);
+    }
+
+    @Override
+    public synchronized void update(double[] confidences, long[] groundTruth, int numInstances, int numLabels) {
+        this.checkNumLabels(numLabels);
+
+        for (int i = 0; i < numInstances; i++) {
+            this.instance.reset();
+            UncertainHammingKernel.accumulate(confidences, groundTruth, i, i + 1, numLabels, this.tau, this.omega,
+                    this.instance);
+            this.add((int) this.instance.getErrors(), (int) this.instance.getUncertainty());
+        }
+    }
+
+    public synchronized void reset() {
+        this.clear();
+    }
+
+    public boolean handlesMissingValues() {
+        return false;
+    }
+
+    /**
+     * Computes the loss of a single instance with the current tau and omega, without updating the measure.
+     */
+    public synchronized double computeLoss(MultiLabelOutput prediction, boolean[] groundTruth) {
+        double[] confidences = prediction.getConfidences();
+        boolean[] bipartition = prediction.getBipartition();
+        double errors = 0;
+        double uncertain = 0;
+
+        for (int j = 0; j < groundTruth.length; j++) {
+            if (confidences[j] < this.tau || confidences[j] > 1 - this.tau) {
+                if (bipartition[j] != groundTruth[j]) {
+                    errors++;
+                }
+            } else {
+                uncertain++;
+            }
+        }
+
+        return (errors + uncertain * this.omega) / groundTruth.length;
+    }
+
+    /**
+     * Copies tau, omega and the number of labels to another instance, e.g. in `makeCopy()`.
+     */
+    protected void copyParametersTo(OnlineUncertainLoss other) {
+        other.tau = this.tau;
+        other.omega = this.omega;
+        other.numLabels = this.numLabels;
+    }
+
+    private void checkNumLabels(int numLabels) {
+        if (this.numLabels == 0) {
+            this.numLabels = numLabels;
+        } else if (this.numLabels != numLabels) {
+            throw new IllegalArgumentException("loss has seen " + this.numLabels + " labels per instance, but "
+                    + numLabels + " are given");
+        }
+    }
+}
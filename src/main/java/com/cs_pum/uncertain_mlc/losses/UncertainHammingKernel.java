@@ -0,0 +1,102 @@
+package com.cs_pum.uncertain_mlc.losses;
+
+
+/**
+ * Branchless kernel of the uncertain hamming loss over contiguous blocks of confidences.
+ *
+ * In contrast to `UncertainHammingLoss.computeLoss(…)`, the tau interval test and the comparison of the
+ * bipartition with the ground truth are evaluated as 0/1 integers and combined with bitwise operations, so the
+ * loop body contains no data-dependent branches. Since the number of labels is the same for every instance,
+ * the summed instance-wise losses equal `(errors + omega * uncertain) / numLabels` and the kernel runs over the
+ * whole block as a single flat loop.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-06
+ */
+public final class UncertainHammingKernel {
+    private UncertainHammingKernel() {}
+
+    /**
+     * Accumulates the loss of the instances `from` (inclusive) to `to` (exclusive) into `state`.
+     *
+     * @param confidences row-major confidences, `numLabels` consecutive values per instance
+     * @param groundTruth packed ground truth, bit `i * numLabels + j` is set iff label `j` of instance `i`
+     *                    is relevant
+     * @param from first instance
+     * @param to last instance (exclusive)
+     * @param numLabels number of labels per instance
+     * @param tau threshold of the uncertainty interval
+     * @param omega weight of an uncertain prediction
+     * @param state state to update
+     */
+    public static void accumulate(double[] confidences, long[] groundTruth, int from, int to, int numLabels,
+                                  double tau, double omega, UncertainLossState state) {
+        double upper = 1 - tau;
+        int end = to * numLabels;
+        int errors = 0;
+        int uncertain = 0;
+
+        for (int k = from * numLabels; k < end; k++) {
+            double p = confidences[k];
+            int certain = (p < tau | p > upper) ? 1 : 0;
+            int predicted = p >= .5 ? 1 : 0;
+            int relevant = (int) (groundTruth[k >>> 6] >>> k) & 1;
+
+            errors += certain & (predicted ^ relevant);
+            uncertain += certain ^ 1;
+        }
+
+        state.add((errors + uncertain * omega) / numLabels, to - from, errors, uncertain);
+    }
+
+    /**
+     * Single precision variant of `accumulate(double[], …)`. The thresholds are compared in double precision,
+     * so a float confidence is classified exactly as its widened double value would be.
+     */
+    public static void accumulate(float[] confidences, long[] groundTruth, int from, int to, int numLabels,
+                                  double tau, double omega, UncertainLossState state) {
+        double upper = 1 - tau;
+        int end = to * numLabels;
+        int errors = 0;
+        int uncertain = 0;
+
+        for (int k = from * numLabels; k < end; k++) {
+            double p = confidences[k];
+            int certain = (p < tau | p > upper) ? 1 : 0;
+            int predicted = p >= .5 ? 1 : 0;
+            int relevant = (int) (groundTruth[k >>> 6] >>> k) & 1;
+
+            errors += certain & (predicted ^ relevant);
+            uncertain += certain ^ 1;
+        }
+
+        state.add((errors + uncertain * omega) / numLabels, to - from, errors, uncertain);
+    }
+
+    /**
+     * Variant of `accumulate(double[], …)` with per-label thresholds: the confidence `p` of label `j` is
+     * considered uncertain iff `lower[j] <= p <= upper[j]`.
+     */
+    public static void accumulate(double[] confidences, long[] groundTruth, int from, int to, int numLabels,
+                                  double[] lower, double[] upper, double omega, UncertainLossState state) {
+        int errors = 0;
+        int uncertain = 0;
+
+        for (int i = from; i < to; i++) {
+            int offset = i * numLabels;
+
+            for (int j = 0; j < numLabels; j++) {
+                int k = offset + j;
+                double p = confidences[k];
+                int certain = (p < lower[j] | p > upper[j]) ? 1 : 0;
+                int predicted = p >= .5 ? 1 : 0;
+                int relevant = (int) (groundTruth[k >>> 6] >>> k) & 1;
+
+                errors += certain & (predicted ^ relevant);
+                uncertain += certain ^ 1;
+            }
+        }
+
+        state.add((errors + uncertain * omega) / numLabels, to - from, errors, uncertain);
+    }
+}
@@ -1,9 +1,12 @@
 package com.cs_pum.uncertain_mlc.losses;
 
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
 import mulan.classifier.MultiLabelOutput;
 import mulan.evaluation.GroundTruth;
 import mulan.evaluation.measure.Measure;
 
+import java.util.stream.IntStream;
+
 
 /**
  * This class implements the uncertain hamming loss. Predictions in the form of confidences or probabilities that the
@@ -15,16 +18,27 @@ import mulan.evaluation.measure.Measure;
  * The attribute `omega` as set by `setOmega(…)` controls the weights associated with an uncertain
  * (and hence considered wrong) prediction in the loss calculation.
  *
+ * Instead of one symmetric tau, per-label and asymmetric thresholds can be set via `setThresholds(…)`: the
+ * confidence of label `j` is then considered uncertain iff `lower[j] <= p <= upper[j]`.
+ *
+ * The accumulated sums are kept in an `UncertainLossState`. All methods reading or modifying it are synchronized,
+ * so a single instance can be fed from multiple threads. For large batches `updateParallel(…)` evaluates
+ * partial states per thread and merges them once, and `evaluate(…)` computes a partial state without touching
+ * the measure at all, e.g. to merge results of separate shards later on via `merge(…)`.
+ *
  * @author Christian Schulze
  * @since  2018-06-25
  */
 public class UncertainHammingLoss implements UncertainLoss {
+    /* number of instances evaluated en bloc by a single task of the parallel update */
+    private static final int PARALLEL_BLOCK_SIZE = 1024;
+
     private double tau = 1./3;
     private double omega = 1.0;
-    private double accum = 0;
-    private double calls = 0;
-    private double uncertainty = 0;
-    private double labelSize = 0;
+    /* per-label thresholds, null if the symmetric tau applies to all labels */
+    private double[] lower = null;
+    private double[] upper = null;
+    private final UncertainLossState state = new UncertainLossState();
 
     public UncertainHammingLoss() {}
 
@@ -37,23 +51,62 @@ public class UncertainHammingLoss implements UncertainLoss {
         setTau(tau);
     }
 
-    public double getTau() {
+    public synchronized double getTau() {
         return tau;
     }
 
-    public void setTau(double tau) {
+    public synchronized void setTau(double tau) {
         if (tau <= 0 || tau > .5) {
             throw new IllegalArgumentException("Tau needs to be > 0. and <= 0.5");
         }
 
         this.tau = tau;
+        this.lower = null;
+        this.upper = null;
+    }
+
+    /**
+     * Sets per-label thresholds, replacing the symmetric tau: the confidence `p` of label `j` is considered
+     * uncertain iff `lower[j] <= p <= upper[j]`. A symmetric tau corresponds to `lower[j] = tau` and
+     * `upper[j] = 1 - tau`. Setting tau again discards the per-label thresholds.
+     *
+     * @param lower lower thresholds (between 0 and 0.5)
+     * @param upper upper thresholds (between 0.5 and 1)
+     */
+    public synchronized void setThresholds(double[] lower, double[] upper) {
+        if (lower.length != upper.length) {
+            throw new IllegalArgumentException("lower and upper thresholds need to have the same length");
+        }
+
+        for (int j = 0; j < lower.length; j++) {
+            if (lower[j] < 0 || lower[j] > .5 || upper[j] < .5 || upper[j] > 1) {
+                throw new IllegalArgumentException("Thresholds need to satisfy 0 <= lower <= 0.5 <= upper <= 1");
+            }
+        }
+
+        this.lower = lower.clone();
+        this.upper = upper.clone();
+    }
+
+    /**
+     * @return per-label lower thresholds, or null if the symmetric tau is used
+     */
+    public synchronized double[] getLowerThresholds() {
+        return this.lower == null ? null : this.lower.clone();
+    }
+
+    /**
+     * @return per-label upper thresholds, or null if the symmetric tau is used
+     */
+    public synchronized double[] getUpperThresholds() {
+        return this.upper == null ? null : this.upper.clone();
     }
 
-    public double getOmega() {
+    public synchronized double getOmega() {
         return omega;
     }
 
-    public void setOmega(double omega) {
+    public synchronized void setOmega(double omega) {
         if (omega <= 0. || omega > 0.5) {
             throw new IllegalArgumentException("Omega needs to be > 0. and <= 0.5");
         }
@@ -70,66 +123,163 @@ public class UncertainHammingLoss implements UncertainLoss {
         return "Uncertain Hamming Loss";
     }
 
-    public double getValue() {
-        if (this.calls == 0) {
+    public synchronized double getValue() {
+        if (this.state.getCalls() == 0) {
             new Exception("measure has not been fed with data yet");
         }
 
-        return this.accum / this.calls;
+        return this.state.getAccum() / this.state.getCalls();
     }
 
     public double getIdealValue() {
         return 0;
     }
 
-    public double getUncertainty() {
-        return this.omega * (this.uncertainty / (this.calls * this.labelSize));
+    public synchronized double getUncertainty() {
+        return this.omega * (this.state.getUncertainty() / (this.state.getCalls() * this.state.getLabelSize()));
+    }
+
+    @Override
+    public synchronized double getNoUncertain() {
+        return this.state.getUncertainty();
+    }
+
+    @Override
+    public synchronized double getNoErrors() {
+        return this.state.getErrors();
+    }
+
+    /**
+     * @return a copy of the accumulated state
+     */
+    public synchronized UncertainLossState getState() {
+        return this.state.copy();
+    }
+
+    /**
+     * Merges a partial state (e.g. as computed by `evaluate(…)` on another thread or shard) into this measure.
+     * The partial state has to be computed with the same tau and omega.
+     *
+     * @param partial state to merge
+     */
+    public synchronized void merge(UncertainLossState partial) {
+        this.state.merge(partial);
+    }
+
+    public synchronized void update(MultiLabelOutput multiLabelOutput, GroundTruth groundTruth) {
+        if (this.state.getLabelSize() == 0) {
+            this.state.setLabelSize(groundTruth.getTrueLabels().length);
+        }
+
+        this.state.add(this.computeLoss(multiLabelOutput, groundTruth.getTrueLabels()), 0, 0);
     }
 
     @Override
-    public double getNoUncertain() {
-        return this.uncertainty;
+    public void update(double[] confidences, long[] groundTruth, int numInstances, int numLabels) {
+        UncertainLossState partial = new UncertainLossState(numLabels);
+        this.accumulate(confidences, groundTruth, 0, numInstances, numLabels, partial);
+        this.merge(partial);
+    }
+
+    /**
+     * Updates the loss with a batch of predictions, evaluating blocks of instances in parallel on the common
+     * fork-join pool. The result is the same as for `update(…)` up to the order of floating point summation.
+     *
+     * @param predictions predictions to evaluate
+     */
+    public void updateParallel(PredictionMatrix predictions) {
+        int numInstances = predictions.getNumInstances();
+        int numBlocks = (numInstances + PARALLEL_BLOCK_SIZE - 1) / PARALLEL_BLOCK_SIZE;
+        UncertainLossState partial = IntStream.range(0, numBlocks).parallel().collect(
+                () -> new UncertainLossState(predictions.getNumLabels()),
+                (state, block) -> this.accumulate(predictions.getConfidences(), predictions.getGroundTruth(),
+                        block * PARALLEL_BLOCK_SIZE, Math.min(numInstances, (block + 1) * PARALLEL_BLOCK_SIZE),
+                        predictions.getNumLabels(), state),
+                UncertainLossState::merge);
+
+        this.merge(partial);
+    }
+
+    /**
+     * Computes the partial state for a range of instances with the current tau and omega, without modifying
+     * this measure.
+     *
+     * @param predictions predictions to evaluate
+     * @param from first instance (inclusive)
+     * @param to last instance (exclusive)
+     * @return partial state of the range
+     */
+    public UncertainLossState evaluate(PredictionMatrix predictions, int from, int to) {
+        UncertainLossState partial = new UncertainLossState(predictions.getNumLabels());
+        this.accumulate(predictions.getConfidences(), predictions.getGroundTruth(), from, to,
+                predictions.getNumLabels(), partial);
+
+        return partial;
     }
 
-    public void update(MultiLabelOutput multiLabelOutput, GroundTruth groundTruth) {
-        if (this.labelSize == 0) {
-            this.labelSize =  groundTruth.getTrueLabels().length;
+    /**
+     * Evaluates a range of instances with the kernel matching the current thresholds. The parameters are read
+     * once, so the kernel itself runs without holding the lock.
+     */
+    private void accumulate(double[] confidences, long[] groundTruth, int from, int to, int numLabels,
+                            UncertainLossState state) {
+        double tau;
+        double omega;
+        double[] lower;
+        double[] upper;
+
+        synchronized (this) {
+            tau = this.tau;
+            omega = this.omega;
+            lower = this.lower;
+            upper = this.upper;
         }
 
-        this.accum += this.computeLoss(multiLabelOutput, groundTruth.getTrueLabels());
-        this.calls++;
+        if (lower == null) {
+            UncertainHammingKernel.accumulate(confidences, groundTruth, from, to, numLabels, tau, omega, state);
+        } else {
+            if (lower.length != numLabels) {
+                throw new IllegalArgumentException("thresholds are set for " + lower.length + " labels, but "
+                        + numLabels + " are given");
+            }
+
+            UncertainHammingKernel.accumulate(confidences, groundTruth, from, to, numLabels, lower, upper, omega,
+                    state);
+        }
     }
 
-    public Measure makeCopy() {
+    public synchronized Measure makeCopy() {
         UncertainHammingLoss uhl = new UncertainHammingLoss();
 
-        uhl.setOmega(this.omega);
-        uhl.setTau(this.tau);
-        // FIXME: exact copy or only of parameters?
-        uhl.accum = this.accum;
-        uhl.calls = this.calls;
+        // assigned directly, as the default omega is not accepted by `setOmega(…)`
+        uhl.omega = this.omega;
+        uhl.tau = this.tau;
+        uhl.lower = this.lower;
+        uhl.upper = this.upper;
+        uhl.state.merge(this.state);
 
         return uhl;
     }
 
-    public void reset() {
-        this.calls = 0;
-        this.accum = 0;
-        this.uncertainty = 0;
+    public synchronized void reset() {
+        this.state.reset();
     }
 
     public boolean handlesMissingValues() {
         return false;
     }
 
-    public double computeLoss(MultiLabelOutput prediction, boolean[] groundTruth) {
+    public synchronized double computeLoss(MultiLabelOutput prediction, boolean[] groundTruth) {
         double[] probabilities = prediction.getConfidences();
         boolean[] bipartition = prediction.getBipartition();
         double symmetricDifference = 0;
         double u = 0;
 
         for (int i = 0; i < groundTruth.length; i++) {
-            if (probabilities[i] < this.tau || probabilities[i] > (1 - this.tau)) {
+            double lower = this.lower == null ? this.tau : this.lower[i];
+            double upper = this.upper == null ? 1 - this.tau : this.upper[i];
+
+            if (probabilities[i] < lower || probabilities[i] > upper) {
                 if (bipartition[i] != groundTruth[i]) {
                     symmetricDifference++;
                 }
@@ -138,7 +288,7 @@ public class UncertainHammingLoss implements UncertainLoss {
             }
         }
 
-        this.uncertainty += u;
+        this.state.addCounts(symmetricDifference, u);
 
         return (symmetricDifference + (u * this.omega)) / groundTruth.length;
     }
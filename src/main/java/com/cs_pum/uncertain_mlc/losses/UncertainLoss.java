@@ -1,5 +1,6 @@
 package com.cs_pum.uncertain_mlc.losses;
 
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
 import mulan.evaluation.loss.MultiLabelLossFunction;
 import mulan.evaluation.measure.Measure;
 
@@ -25,4 +26,27 @@ public interface UncertainLoss extends MultiLabelLossFunction, Measure {
      */
     double getNoUncertain();
 
+    /**
+     * Returns total count of labels that are considered certain, but are predicted wrongly
+     * @return
+     */
+    double getNoErrors();
+
+    /**
+     * Updates the loss with a batch of predictions given as primitive arrays. This is equivalent to calling
+     * `update(…)` for every instance, but does not create any objects.
+     *
+     * @param confidences row-major confidences, `numLabels` consecutive values per instance
+     * @param groundTruth packed ground truth, bit `i * numLabels + j` is set iff label `j` of instance `i`
+     *                    is relevant
+     * @param numInstances number of instances in the batch
+     * @param numLabels number of labels per instance
+     */
+    void update(double[] confidences, long[] groundTruth, int numInstances, int numLabels);
+
+    default void update(PredictionMatrix predictions) {
+        this.update(predictions.getConfidences(), predictions.getGroundTruth(),
+                predictions.getNumInstances(), predictions.getNumLabels());
+    }
+
 }
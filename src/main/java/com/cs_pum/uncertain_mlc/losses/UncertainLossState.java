@@ -0,0 +1,115 @@
+package com.cs_pum.uncertain_mlc.losses;
+
+
+/**
+ * Accumulated state of an uncertain loss: the summed instance-wise losses, the number of instances, and the
+ * number of uncertain and wrongly predicted (certain) labels. States are not thread-safe themselves, but
+ * partial states computed by separate threads or on separate shards can be merged in any order, since merging
+ * only adds up the sums.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-05
+ */
+public class UncertainLossState {
+    private double accum = 0;
+    private double calls = 0;
+    private double uncertainty = 0;
+    private double errors = 0;
+    private double labelSize = 0;
+
+    public UncertainLossState() {}
+
+    public UncertainLossState(int labelSize) {
+        this.labelSize = labelSize;
+    }
+
+    /**
+     * Adds the loss of one instance.
+     *
+     * @param loss loss of the instance
+     * @param errors number of certain, but wrongly predicted labels of the instance
+     * @param uncertain number of uncertain labels of the instance
+     */
+    public void add(double loss, double errors, double uncertain) {
+        this.accum += loss;
+        this.calls++;
+        this.errors += errors;
+        this.uncertainty += uncertain;
+    }
+
+    /**
+     * Adds the accumulated losses of a batch of instances.
+     */
+    public void add(double loss, double calls, double errors, double uncertain) {
+        this.accum += loss;
+        this.calls += calls;
+        this.errors += errors;
+        this.uncertainty += uncertain;
+    }
+
+    /**
+     * Adds the counts of labels only, without counting an instance (see `UncertainLoss.computeLoss(…)`).
+     */
+    void addCounts(double errors, double uncertain) {
+        this.errors += errors;
+        this.uncertainty += uncertain;
+    }
+
+    /**
+     * Merges another state into this one.
+     *
+     * @param other state to merge
+     * @return this state
+     */
+    public UncertainLossState merge(UncertainLossState other) {
+        if (this.labelSize == 0) {
+            this.labelSize = other.labelSize;
+        } else if (other.labelSize != 0 && other.labelSize != this.labelSize) {
+            throw new IllegalArgumentException("states with a different number of labels can not be merged");
+        }
+
+        this.accum += other.accum;
+        this.calls += other.calls;
+        this.errors += other.errors;
+        this.uncertainty += other.uncertainty;
+
+        return this;
+    }
+
+    public UncertainLossState copy() {
+        UncertainLossState state = new UncertainLossState();
+
+        return state.merge(this);
+    }
+
+    public void reset() {
+        this.accum = 0;
+        this.calls = 0;
+        this.errors = 0;
+        this.uncertainty = 0;
+    }
+
+    public double getAccum() {
+        return accum;
+    }
+
+    public double getCalls() {
+        return calls;
+    }
+
+    public double getUncertainty() {
+        return uncertainty;
+    }
+
+    public double getErrors() {
+        return errors;
+    }
+
+    public double getLabelSize() {
+        return labelSize;
+    }
+
+    public void setLabelSize(double labelSize) {
+        this.labelSize = labelSize;
+    }
+}
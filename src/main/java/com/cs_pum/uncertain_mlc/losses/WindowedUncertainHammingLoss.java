@@ -0,0 +1,95 @@
+package com.cs_pum.uncertain_mlc.losses;
+
+import mulan.evaluation.measure.Measure;
+
+
+/**
+ * Uncertain hamming loss over the last `windowSize` predictions. The counts of the instances within the window
+ * are kept in a ring buffer alongside their running sums, so the oldest instance is subtracted when a new one
+ * arrives. As the sums are integers, they do not drift no matter how long the stream is.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-17
+ */
+public class WindowedUncertainHammingLoss extends OnlineUncertainLoss {
+    private final int[] errors;
+    private final int[] uncertain;
+    /* index the next instance is written to */
+    private int head = 0;
+    private int size = 0;
+    private long errorSum = 0;
+    private long uncertainSum = 0;
+
+    public WindowedUncertainHammingLoss(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("window size needs to be >= 1");
+        }
+
+        this.errors = new int[windowSize];
+        this.uncertain = new int[windowSize];
+    }
+
+    public WindowedUncertainHammingLoss(int windowSize, double tau, double omega) {
+        this(windowSize);
+        setOmega(omega);
+        setTau(tau);
+    }
+
+    public String getName() {
+        return "Windowed Uncertain Hamming Loss";
+    }
+
+    public int getWindowSize() {
+        return this.errors.length;
+    }
+
+    @Override
+    protected void add(int errors, int uncertain) {
+        if (this.size == this.errors.length) {
+            this.errorSum -= this.errors[this.head];
+            this.uncertainSum -= this.uncertain[this.head];
+        } else {
+            this.size++;
+        }
+
+        this.errors[this.head] = errors;
+        this.uncertain[this.head] = uncertain;
+        this.errorSum += errors;
+        this.uncertainSum += uncertain;
+        this.head = (this.head + 1) % this.errors.length;
+    }
+
+    @Override
+    protected double getWeight() {
+        return this.size;
+    }
+
+    @Override
+    protected void clear() {
+        this.head = 0;
+        this.size = 0;
+        this.errorSum = 0;
+        this.uncertainSum = 0;
+    }
+
+    public synchronized double getNoUncertain() {
+        return this.uncertainSum;
+    }
+
+    public synchronized double getNoErrors() {
+        return this.errorSum;
+    }
+
+    public synchronized Measure makeCopy() {
+        WindowedUncertainHammingLoss copy = new WindowedUncertainHammingLoss(this.errors.length);
+        this.copyParametersTo(copy);
+        System.arraycopy(this.errors, 0, copy.errors, 0, this.errors.length);
+        System.arraycopy(this.uncertain, 0, copy.uncertain, 0, this.uncertain.length);
+        copy.head = this.head;
+        copy.size = this.size;
+        copy.errorSum = this.errorSum;
+        copy.uncertainSum = this.uncertainSum;
+
+        return copy;
+    }
+}
@@ -0,0 +1,244 @@
+package com.cs_pum.uncertain_mlc.optimization;
+
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+import com.cs_pum.uncertain_mlc.losses.UncertainLoss;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Searches tau of an arbitrary uncertain loss to a given resolution, evaluating the loss (one full pass over
+ * the predictions per candidate) only a logarithmic number of times in the resolution. Two strategies are
+ * available:
+ *
+ * - `COARSE_TO_FINE` evaluates a grid of `gridSize` candidates over (0, 1/2] and recursively refines the grid
+ *   within the bracket of the neighbours of the best candidate, shrinking the step by a factor of `gridSize / 2`
+ *   per round. It does not assume anything about the shape of the loss, but may miss narrow optima between two
+ *   candidates of a coarse round.
+ * - `GOLDEN_SECTION` narrows down the bracket by the golden ratio with a single pass per round. It finds the
+ *   optimum iff the loss is unimodal in tau.
+ *
+ * Candidates are never evaluated twice. As in `TauOptimization.tauGridSearch`, the optimum is the first
+ * (smallest) tau attaining the minimal loss among all evaluated candidates. For the uncertain hamming loss
+ * the exact optimum can be found in a single pass with `UncertaintyMarginSweep` instead.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-19
+ */
+public class AdaptiveTauSearch {
+    public enum Strategy {
+        COARSE_TO_FINE,
+        GOLDEN_SECTION
+    }
+
+    private static final double GOLDEN_RATIO = (Math.sqrt(5) - 1) / 2;
+
+    private final UncertainLoss measure;
+    private final double omega;
+    private Strategy strategy = Strategy.COARSE_TO_FINE;
+    private double resolution = 1e-3;
+    private int gridSize = 10;
+
+    /**
+     * @param measure measure to be minimized, it is reset and updated for every candidate
+     * @param omega weight of an uncertain prediction
+     */
+    public AdaptiveTauSearch(UncertainLoss measure, double omega) {
+        this.measure = measure;
+        this.omega = omega;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public double getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @param resolution width of the bracket around the optimum at which the search stops, e.g. 1e-4
+     */
+    public void setResolution(double resolution) {
+        if (resolution <= 0 || resolution >= .5) {
+            throw new IllegalArgumentException("resolution needs to be > 0. and < 0.5");
+        }
+
+        this.resolution = resolution;
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * @param gridSize number of candidates per round of `COARSE_TO_FINE`
+     */
+    public void setGridSize(int gridSize) {
+        if (gridSize < 4) {
+            throw new IllegalArgumentException("grid size needs to be >= 4");
+        }
+
+        this.gridSize = gridSize;
+    }
+
+    /**
+     * Searches the optimal tau for the given predictions.
+     *
+     * @param predictions predictions to evaluate the measure on
+     * @return all evaluated candidates and the number of passes used
+     */
+    public AdaptiveTauSearchResult search(PredictionMatrix predictions) {
+        TreeMap<Double, double[]> evaluated = new TreeMap<>();
+        List<Integer> passesPerRound = new ArrayList<>();
+        double bracketWidth;
+
+        if (this.strategy == Strategy.GOLDEN_SECTION) {
+            bracketWidth = this.goldenSection(predictions, evaluated, passesPerRound);
+        } else {
+            bracketWidth = this.coarseToFine(predictions, evaluated, passesPerRound);
+        }
+
+        double[] taus = new double[evaluated.size()];
+        double[] losses = new double[evaluated.size()];
+        double[] uncertainties = new double[evaluated.size()];
+        int optIndex = 0;
+        int i = 0;
+
+        for (Map.Entry<Double, double[]> entry : evaluated.entrySet()) {
+            taus[i] = entry.getKey();
+            losses[i] = entry.getValue()[0];
+            uncertainties[i] = entry.getValue()[1];
+
+            if (losses[i] < losses[optIndex]) {
+                optIndex = i;
+            }
+
+            i++;
+        }
+
+        int[] passes = new int[passesPerRound.size()];
+
+        for (int r = 0; r < passes.length; r++) {
+            passes[r] = passesPerRound.get(r);
+        }
+
+        return new AdaptiveTauSearchResult(taus, losses, uncertainties, optIndex, passes, bracketWidth);
+    }
+
+    private double coarseToFine(PredictionMatrix predictions, TreeMap<Double, double[]> evaluated,
+                                List<Integer> passesPerRound) {
+        double lower = 0;
+        double upper = .5;
+        double step = (upper - lower) / this.gridSize;
+
+        while (true) {
+            int passes = 0;
+
+            for (int i = 1; i <= this.gridSize; i++) {
+                double tau = lower + i * step;
+
+                if (tau > 0 && tau <= .5 && !isEvaluated(evaluated, tau, step / 1e6)) {
+                    evaluated.put(tau, this.evaluate(predictions, tau));
+                    passes++;
+                }
+            }
+
+            passesPerRound.add(passes);
+
+            if (2 * step <= this.resolution) {
+                return 2 * step;
+            }
+
+            // the optimum lies between the neighbours of the best candidate
+            double best = bestTau(evaluated);
+            lower = Math.max(0, best - step);
+            upper = Math.min(.5, best + step);
+            step = (upper - lower) / this.gridSize;
+        }
+    }
+
+    private double goldenSection(PredictionMatrix predictions, TreeMap<Double, double[]> evaluated,
+                                 List<Integer> passesPerRound) {
+        double lower = 0;
+        double upper = .5;
+        double left = upper - GOLDEN_RATIO * (upper - lower);
+        double right = lower + GOLDEN_RATIO * (upper - lower);
+        double leftLoss = this.evaluate(predictions, left, evaluated);
+        double rightLoss = this.evaluate(predictions, right, evaluated);
+        passesPerRound.add(2);
+
+        while (upper - lower > this.resolution) {
+            // on ties the bracket moves towards the smaller tau
+            if (leftLoss <= rightLoss) {
+                upper = right;
+                right = left;
+                rightLoss = leftLoss;
+                left = upper - GOLDEN_RATIO * (upper - lower);
+                leftLoss = this.evaluate(predictions, left, evaluated);
+            } else {
+                lower = left;
+                left = right;
+                leftLoss = rightLoss;
+                right = lower + GOLDEN_RATIO * (upper - lower);
+                rightLoss = this.evaluate(predictions, right, evaluated);
+            }
+
+            passesPerRound.add(1);
+        }
+
+        return upper - lower;
+    }
+
+    private double evaluate(PredictionMatrix predictions, double tau, TreeMap<Double, double[]> evaluated) {
+        double[] result = this.evaluate(predictions, tau);
+        evaluated.put(tau, result);
+
+        return result[0];
+    }
+
+    /**
+     * Evaluates the measure for a single tau in one pass over the predictions.
+     *
+     * @return loss and uncertainty
+     */
+    private double[] evaluate(PredictionMatrix predictions, double tau) {
+        this.measure.reset();
+        this.measure.setTau(tau);
+        this.measure.setOmega(this.omega);
+        this.measure.update(predictions);
+
+        return new double[]{this.measure.getValue(), this.measure.getUncertainty()};
+    }
+
+    /**
+     * Checks whether a candidate has been evaluated already, up to rounding errors in computing the grid.
+     */
+    private static boolean isEvaluated(TreeMap<Double, double[]> evaluated, double tau, double tolerance) {
+        Double below = evaluated.floorKey(tau);
+        Double above = evaluated.ceilingKey(tau);
+
+        return (below != null && tau - below <= tolerance) || (above != null && above - tau <= tolerance);
+    }
+
+    private static double bestTau(TreeMap<Double, double[]> evaluated) {
+        double bestTau = 0;
+        double bestLoss = Double.POSITIVE_INFINITY;
+
+        for (Map.Entry<Double, double[]> entry : evaluated.entrySet()) {
+            if (entry.getValue()[0] < bestLoss) {
+                bestLoss = entry.getValue()[0];
+                bestTau = entry.getKey();
+            }
+        }
+
+        return bestTau;
+    }
+}
@@ -0,0 +1,63 @@
+package com.cs_pum.uncertain_mlc.optimization;
+
+import java.util.Arrays;
+
+
+/**
+ * Result of an `AdaptiveTauSearch`: all evaluated candidates ordered by tau, alongside how many full passes
+ * over the predictions each round of the search took and the width of the final bracket around the optimum.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-19
+ */
+public class AdaptiveTauSearchResult extends TauSearchResult {
+    private final int[] passesPerRound;
+    private final double bracketWidth;
+
+    /**
+     * @param taus evaluated candidates in increasing order
+     * @param losses loss for each candidate
+     * @param uncertainties uncertainty component of the loss for each candidate
+     * @param optIndex index of the optimal candidate
+     * @param passesPerRound number of passes over the predictions per round
+     * @param bracketWidth width of the interval around the optimum the search ended with
+     */
+    public AdaptiveTauSearchResult(double[] taus, double[] losses, double[] uncertainties, int optIndex,
+                                   int[] passesPerRound, double bracketWidth) {
+        super(taus, losses, uncertainties, optIndex);
+        this.passesPerRound = passesPerRound;
+        this.bracketWidth = bracketWidth;
+    }
+
+    /**
+     * @return total number of passes over the predictions, i.e. the number of evaluated candidates
+     */
+    public int getNumPasses() {
+        int passes = 0;
+
+        for (int p : this.passesPerRound) {
+            passes += p;
+        }
+
+        return passes;
+    }
+
+    public int getNumRounds() {
+        return this.passesPerRound.length;
+    }
+
+    public int[] getPassesPerRound() {
+        return this.passesPerRound;
+    }
+
+    public double getBracketWidth() {
+        return this.bracketWidth;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + ", " + this.getNumPasses() + " passes in " + this.getNumRounds() + " rounds "
+                + Arrays.toString(this.passesPerRound) + ", bracket width: "
+                + String.format("%.2e", this.bracketWidth);
+    }
+}
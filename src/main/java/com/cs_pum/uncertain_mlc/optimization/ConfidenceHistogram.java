@@ -0,0 +1,216 @@
+package com.cs_pum.uncertain_mlc.optimization;
+
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+
+import java.io.Serializable;
+import java.util.List;
+
+
+/**
+ * Fixed-resolution histogram of label confidences, split by ground truth. The unit interval is divided into
+ * `resolution` bins of equal width. Bins are closed towards the outside: bin `b` of the lower half holds
+ * confidences in `[b / resolution, (b + 1) / resolution)`, bin `b` of the upper half those in
+ * `(b / resolution, (b + 1) / resolution]`. The certain labels for `tau = i / resolution`, i.e. confidences
+ * `< tau` or `> 1 - tau`, thus fill whole bins. A confidence of exactly 1/2 is uncertain for every tau and is
+ * counted separately. Each label adds a (possibly fractional) weight to its bin, so the histogram can also
+ * represent weighted or decayed data.
+ *
+ * The resolution has to be even, so that 1/2 is a bin edge and the bipartition induced by the threshold 1/2 is
+ * the same for all confidences of a bin. Histograms of equal resolution can be merged.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-09
+ */
+public class ConfidenceHistogram implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int resolution;
+    private final double[] relevant;
+    private final double[] irrelevant;
+    private double center = 0;
+
+    public ConfidenceHistogram(int resolution) {
+        if (resolution < 2 || resolution % 2 != 0) {
+            throw new IllegalArgumentException("resolution needs to be even and >= 2");
+        }
+
+        this.resolution = resolution;
+        this.relevant = new double[resolution];
+        this.irrelevant = new double[resolution];
+    }
+
+    /**
+     * Returns the bin of a confidence. The product with the resolution is only a first guess, which is corrected
+     * by comparing the confidence with the bin edges as the loss computes them, i.e. with `tau = k / resolution`
+     * in the lower and with `1 - tau` in the upper half, so that a confidence on an edge is binned the way the
+     * loss classifies it.
+     *
+     * @return bin of a confidence, or -1 for a confidence of exactly 1/2
+     */
+    public int bin(double confidence) {
+        if (confidence == .5) {
+            return -1;
+        }
+
+        int half = this.resolution / 2;
+
+        if (confidence < .5) {
+            // bin b holds confidences with b / resolution <= p < (b + 1) / resolution
+            int b = Math.max(0, Math.min((int) Math.floor(confidence * this.resolution), half - 1));
+
+            while (b > 0 && confidence < this.edge(b)) {
+                b--;
+            }
+
+            while (b < half - 1 && confidence >= this.edge(b + 1)) {
+                b++;
+            }
+
+            return b;
+        }
+
+        // bin b holds confidences with 1 - (resolution - b) / resolution < p <= 1 - (resolution - b - 1) / resolution
+        int b = Math.max(half, Math.min((int) Math.ceil(confidence * this.resolution) - 1, this.resolution - 1));
+
+        while (b > half && confidence <= 1 - this.edge(this.resolution - b)) {
+            b--;
+        }
+
+        while (b < this.resolution - 1 && confidence > 1 - this.edge(this.resolution - b - 1)) {
+            b++;
+        }
+
+        return b;
+    }
+
+    /**
+     * @return tau of the k-th bin edge, computed as by `LossSurface`
+     */
+    private double edge(int k) {
+        return (double) k / this.resolution;
+    }
+
+    public void add(double confidence, boolean isRelevant) {
+        this.add(confidence, isRelevant, 1);
+    }
+
+    public void add(double confidence, boolean isRelevant, double weight) {
+        int b = this.bin(confidence);
+
+        if (b < 0) {
+            this.center += weight;
+        } else if (isRelevant) {
+            this.relevant[b] += weight;
+        } else {
+            this.irrelevant[b] += weight;
+        }
+    }
+
+    /**
+     * Adds all labels of a batch of predictions.
+     */
+    public void addAll(PredictionMatrix predictions) {
+        double[] confidences = predictions.getConfidences();
+        long[] groundTruth = predictions.getGroundTruth();
+        int numValues = predictions.getNumInstances() * predictions.getNumLabels();
+
+        for (int k = 0; k < numValues; k++) {
+            this.add(confidences[k], PredictionMatrix.getBit(groundTruth, k));
+        }
+    }
+
+    /**
+     * Adds all labels of a batch of predictions as collected by the experiments.
+     */
+    public void addAll(List<double[]> confidences, List<double[]> groundTruth) {
+        for (int i = 0; i < confidences.size(); i++) {
+            double[] c = confidences.get(i);
+            double[] gt = groundTruth.get(i);
+
+            for (int j = 0; j < c.length; j++) {
+                this.add(c[j], gt[j] >= .5);
+            }
+        }
+    }
+
+    /**
+     * Multiplies all weights by `factor`, e.g. to let old observations decay.
+     */
+    public void scale(double factor) {
+        for (int b = 0; b < this.resolution; b++) {
+            this.relevant[b] *= factor;
+            this.irrelevant[b] *= factor;
+        }
+
+        this.center *= factor;
+    }
+
+    /**
+     * Merges the weights of another histogram into this one.
+     *
+     * @param other histogram of the same resolution
+     * @return this histogram
+     */
+    public ConfidenceHistogram merge(ConfidenceHistogram other) {
+        if (other.resolution != this.resolution) {
+            throw new IllegalArgumentException("histograms with a different resolution can not be merged");
+        }
+
+        for (int b = 0; b < this.resolution; b++) {
+            this.relevant[b] += other.relevant[b];
+            this.irrelevant[b] += other.irrelevant[b];
+        }
+
+        this.center += other.center;
+
+        return this;
+    }
+
+    public ConfidenceHistogram copy() {
+        return new ConfidenceHistogram(this.resolution).merge(this);
+    }
+
+    public void reset() {
+        for (int b = 0; b < this.resolution; b++) {
+            this.relevant[b] = 0;
+            this.irrelevant[b] = 0;
+        }
+
+        this.center = 0;
+    }
+
+    public int getResolution() {
+        return this.resolution;
+    }
+
+    /**
+     * @return weight of relevant labels per bin (not a copy)
+     */
+    public double[] getRelevant() {
+        return this.relevant;
+    }
+
+    /**
+     * @return weight of irrelevant labels per bin (not a copy)
+     */
+    public double[] getIrrelevant() {
+        return this.irrelevant;
+    }
+
+    /**
+     * @return weight of labels with a confidence of exactly 1/2, which are not part of any bin
+     */
+    public double getCenterWeight() {
+        return this.center;
+    }
+
+    public double getTotalWeight() {
+        double total = this.center;
+
+        for (int b = 0; b < this.resolution; b++) {
+            total += this.relevant[b] + this.irrelevant[b];
+        }
+
+        return total;
+    }
+}
@@ -0,0 +1,172 @@
+package com.cs_pum.uncertain_mlc.optimization;
+
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+
+/**
+ * Optimization of per-label thresholds of the uncertain hamming loss. As the loss decomposes over labels, the
+ * thresholds of all labels are tuned independently and in parallel.
+ *
+ * For symmetric thresholds, tau is optimized per label with `UncertaintyMarginSweep`. For asymmetric thresholds
+ * the decomposition goes one step further: a confidence below 1/2 can only be affected by the lower threshold,
+ * one above by the upper threshold. Each side is optimized on its own by sorting its confidences once, split by
+ * whether the label would be mispredicted if considered certain, and walking the sorted order with running
+ * (prefix-summed) counts of errors and abstentions. Both variants take O(n log n) per label.
+ *
+ * Like the tau search, ties are broken in favour of the widest uncertainty interval and the thresholds are
+ * placed in the middle between two consecutive confidences.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-11
+ */
+public class LabelThresholdOptimization {
+    private LabelThresholdOptimization() {}
+
+    /**
+     * Optimizes one symmetric tau per label (i.e. `lower[j] = tau[j]` and `upper[j] = 1 - tau[j]`).
+     *
+     * @param predictions predictions to optimize the thresholds for
+     * @param omega weight of an uncertain prediction
+     * @return optimal thresholds
+     */
+    public static LabelThresholds optimizeSymmetric(PredictionMatrix predictions, double omega) {
+        int numLabels = predictions.getNumLabels();
+        double[] lower = new double[numLabels];
+        double[] upper = new double[numLabels];
+        double[] losses = new double[numLabels];
+        double[] uncertainties = new double[numLabels];
+
+        IntStream.range(0, numLabels).parallel().forEach(j -> {
+            TauSearchResult result = UncertaintyMarginSweep.forLabel(predictions, j).sweep(omega);
+
+            lower[j] = result.getOptimalTau();
+            upper[j] = 1 - result.getOptimalTau();
+            losses[j] = result.getOptimalLoss();
+            uncertainties[j] = result.getOptimalUncertainty();
+        });
+
+        return new LabelThresholds(lower, upper, losses, uncertainties);
+    }
+
+    /**
+     * Optimizes a lower and an upper threshold per label.
+     *
+     * @param predictions predictions to optimize the thresholds for
+     * @param omega weight of an uncertain prediction
+     * @return optimal thresholds
+     */
+    public static LabelThresholds optimizeAsymmetric(PredictionMatrix predictions, double omega) {
+        int numLabels = predictions.getNumLabels();
+        int numInstances = predictions.getNumInstances();
+        double[] lower = new double[numLabels];
+        double[] upper = new double[numLabels];
+        double[] losses = new double[numLabels];
+        double[] uncertainties = new double[numLabels];
+
+        IntStream.range(0, numLabels).parallel().forEach(j -> {
+            // below 1/2 the label is predicted irrelevant: an error iff relevant. values above 1/2 are negated,
+            // so that both sides are "certain iff value < threshold" (negation is exact, unlike 1 - p)
+            double[] lowerErrors = new double[numInstances];
+            double[] lowerCorrect = new double[numInstances];
+            double[] upperErrors = new double[numInstances];
+            double[] upperCorrect = new double[numInstances];
+            int le = 0;
+            int lc = 0;
+            int ue = 0;
+            int uc = 0;
+
+            for (int i = 0; i < numInstances; i++) {
+                double p = predictions.getConfidence(i, j);
+                boolean relevant = predictions.isRelevant(i, j);
+
+                if (p < .5) {
+                    if (relevant) {
+                        lowerErrors[le++] = p;
+                    } else {
+                        lowerCorrect[lc++] = p;
+                    }
+                } else {
+                    if (relevant) {
+                        upperCorrect[uc++] = -p;
+                    } else {
+                        upperErrors[ue++] = -p;
+                    }
+                }
+            }
+
+            double[] lowerSide = bestThreshold(Arrays.copyOf(lowerErrors, le), Arrays.copyOf(lowerCorrect, lc),
+                    .5, omega);
+            double[] upperSide = bestThreshold(Arrays.copyOf(upperErrors, ue), Arrays.copyOf(upperCorrect, uc),
+                    -.5, omega);
+
+            lower[j] = lowerSide[0];
+            upper[j] = -upperSide[0];
+            losses[j] = (lowerSide[1] + omega * lowerSide[2] + upperSide[1] + omega * upperSide[2]) / numInstances;
+            uncertainties[j] = omega * (lowerSide[2] + upperSide[2]) / numInstances;
+        });
+
+        return new LabelThresholds(lower, upper, losses, uncertainties);
+    }
+
+    /**
+     * Finds the threshold `s <= bound` minimizing `#{errors < s} + omega * #{values >= s}`, i.e. the values below
+     * the threshold are certain and the others uncertain.
+     *
+     * @param errors values that are mispredicted if certain (sorted in place)
+     * @param correct values that are predicted correctly if certain (sorted in place)
+     * @param bound upper bound of the threshold, no value may exceed it
+     * @param omega weight of an uncertain prediction
+     * @return threshold, number of errors and number of uncertain values
+     */
+    private static double[] bestThreshold(double[] errors, double[] correct, double bound, double omega) {
+        Arrays.sort(errors);
+        Arrays.sort(correct);
+
+        int total = errors.length + correct.length;
+        int e = 0;
+        int c = 0;
+        double previous = Double.NEGATIVE_INFINITY;
+        double[] best = null;
+
+        while (previous < bound) {
+            double next = bound;
+
+            if (e < errors.length) {
+                next = Math.min(next, errors[e]);
+            }
+
+            if (c < correct.length) {
+                next = Math.min(next, correct[c]);
+            }
+
+            // every threshold within (previous, next] yields the same counts
+            double threshold = next;
+
+            if (previous != Double.NEGATIVE_INFINITY) {
+                double middle = (previous + next) / 2;
+                threshold = middle > previous ? middle : next;
+            }
+
+            double uncertain = total - e - c;
+
+            if (best == null || e + omega * uncertain < best[1] + omega * best[2]) {
+                best = new double[]{threshold, e, uncertain};
+            }
+
+            while (e < errors.length && errors[e] <= next) {
+                e++;
+            }
+
+            while (c < correct.length && correct[c] <= next) {
+                c++;
+            }
+
+            previous = next;
+        }
+
+        return best;
+    }
+}
@@ -0,0 +1,81 @@
+package com.cs_pum.uncertain_mlc.optimization;
+
+import com.cs_pum.uncertain_mlc.losses.UncertainHammingLoss;
+
+
+/**
+ * Per-label thresholds of the uncertainty interval alongside the uncertain hamming loss they attain on the
+ * data they were optimized on: the confidence `p` of label `j` is considered uncertain iff
+ * `lower[j] <= p <= upper[j]`.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-11
+ */
+public class LabelThresholds {
+    private final double[] lower;
+    private final double[] upper;
+    private final double[] losses;
+    private final double[] uncertainties;
+
+    /**
+     * @param lower lower threshold per label
+     * @param upper upper threshold per label
+     * @param losses uncertain hamming loss per label
+     * @param uncertainties uncertainty component of the loss per label
+     */
+    public LabelThresholds(double[] lower, double[] upper, double[] losses, double[] uncertainties) {
+        this.lower = lower;
+        this.upper = upper;
+        this.losses = losses;
+        this.uncertainties = uncertainties;
+    }
+
+    public double[] getLower() {
+        return this.lower;
+    }
+
+    public double[] getUpper() {
+        return this.upper;
+    }
+
+    public double[] getLosses() {
+        return this.losses;
+    }
+
+    public double[] getUncertainties() {
+        return this.uncertainties;
+    }
+
+    /**
+     * @return uncertain hamming loss over all labels (the mean of the per-label losses)
+     */
+    public double getLoss() {
+        return mean(this.losses);
+    }
+
+    /**
+     * @return uncertainty component over all labels
+     */
+    public double getUncertainty() {
+        return mean(this.uncertainties);
+    }
+
+    /**
+     * Configures a loss to use these thresholds.
+     *
+     * @param loss loss to configure
+     */
+    public void applyTo(UncertainHammingLoss loss) {
+        loss.setThresholds(this.lower, this.upper);
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+
+        for (double v : values) {
+            sum += v;
+        }
+
+        return sum / values.length;
+    }
+}
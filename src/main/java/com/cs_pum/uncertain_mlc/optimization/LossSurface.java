@@ -0,0 +1,173 @@
+package com.cs_pum.uncertain_mlc.optimization;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+
+
+/**
+ * Uncertain hamming loss and its uncertainty component for a grid of (tau, omega) pairs, computed from a
+ * `ConfidenceHistogram`.
+ *
+ * Given tau, the loss only depends on the number of certain, but wrongly predicted labels and on the number of
+ * uncertain labels, and it is linear in omega. Both counts are read off the histogram with prefix sums for every
+ * bin edge tau = i / resolution (i = 1, …, resolution / 2), so computing the surface takes O(resolution) plus
+ * O(1) per grid point, independent of the number of predictions. Confidences are only known up to their bin,
+ * but as the bins are closed towards the outside and confidences are binned by comparing them with these very
+ * taus (see `ConfidenceHistogram.bin(…)`), the counts are exact at the bin edges.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-09
+ */
+public class LossSurface {
+    private final double[] taus;
+    private final double[] omegas;
+    private final double[] errors;
+    private final double[] uncertain;
+    private final double total;
+
+    /**
+     * @param histogram histogram of the confidences
+     * @param omegas weights of an uncertain prediction to evaluate
+     */
+    public LossSurface(ConfidenceHistogram histogram, double[] omegas) {
+        int resolution = histogram.getResolution();
+        double[] relevant = histogram.getRelevant();
+        double[] irrelevant = histogram.getIrrelevant();
+        // prefix sums: weight of all bins < b
+        double[] relevantBelow = new double[resolution + 1];
+        double[] irrelevantBelow = new double[resolution + 1];
+
+        for (int b = 0; b < resolution; b++) {
+            relevantBelow[b + 1] = relevantBelow[b] + relevant[b];
+            irrelevantBelow[b + 1] = irrelevantBelow[b] + irrelevant[b];
+        }
+
+        int noTaus = resolution / 2;
+        this.taus = new double[noTaus];
+        this.errors = new double[noTaus];
+        this.uncertain = new double[noTaus];
+        this.omegas = omegas.clone();
+        this.total = histogram.getTotalWeight();
+
+        for (int i = 1; i <= noTaus; i++) {
+            int upper = resolution - i;
+
+            this.taus[i - 1] = (double) i / resolution;
+            // certain labels below tau are predicted irrelevant, above 1 - tau relevant
+            this.errors[i - 1] = relevantBelow[i] + (irrelevantBelow[resolution] - irrelevantBelow[upper]);
+            // confidences of exactly 1/2 are uncertain for every tau
+            this.uncertain[i - 1] = (relevantBelow[upper] - relevantBelow[i])
+                    + (irrelevantBelow[upper] - irrelevantBelow[i]) + histogram.getCenterWeight();
+        }
+    }
+
+    public double getLoss(int tauIndex, int omegaIndex) {
+        return (this.errors[tauIndex] + this.omegas[omegaIndex] * this.uncertain[tauIndex]) / this.total;
+    }
+
+    public double getUncertainty(int tauIndex, int omegaIndex) {
+        return this.omegas[omegaIndex] * this.uncertain[tauIndex] / this.total;
+    }
+
+    /**
+     * @return losses indexed by tau, then omega
+     */
+    public double[][] getLosses() {
+        double[][] losses = new double[this.taus.length][this.omegas.length];
+
+        for (int t = 0; t < this.taus.length; t++) {
+            for (int o = 0; o < this.omegas.length; o++) {
+                losses[t][o] = this.getLoss(t, o);
+            }
+        }
+
+        return losses;
+    }
+
+    /**
+     * @return uncertainty components indexed by tau, then omega
+     */
+    public double[][] getUncertainties() {
+        double[][] uncertainties = new double[this.taus.length][this.omegas.length];
+
+        for (int t = 0; t < this.taus.length; t++) {
+            for (int o = 0; o < this.omegas.length; o++) {
+                uncertainties[t][o] = this.getUncertainty(t, o);
+            }
+        }
+
+        return uncertainties;
+    }
+
+    /**
+     * Returns the loss curve over tau for one omega. As in the grid search, the first (smallest) tau attaining
+     * the minimal loss is considered optimal.
+     *
+     * @param omegaIndex index of omega
+     * @return loss curve
+     */
+    public TauSearchResult getTauCurve(int omegaIndex) {
+        double[] losses = new double[this.taus.length];
+        double[] uncertainties = new double[this.taus.length];
+        int optIndex = 0;
+
+        for (int t = 0; t < this.taus.length; t++) {
+            losses[t] = this.getLoss(t, omegaIndex);
+            uncertainties[t] = this.getUncertainty(t, omegaIndex);
+
+            if (losses[t] < losses[optIndex]) {
+                optIndex = t;
+            }
+        }
+
+        return new TauSearchResult(this.taus.clone(), losses, uncertainties, optIndex);
+    }
+
+    /**
+     * Writes the surface as csv with the columns `tau`, `omega`, `loss` and `uncertainty`, one row per grid point.
+     *
+     * @param fileName file to write to
+     * @throws IOException
+     */
+    public void writeCSV(String fileName) throws IOException {
+        BufferedWriter out = new BufferedWriter(new FileWriter(fileName));
+        out.write("tau,omega,loss,uncertainty\n");
+
+        for (int t = 0; t < this.taus.length; t++) {
+            for (int o = 0; o < this.omegas.length; o++) {
+                out.write(String.format(Locale.ROOT, "%.8f,%.8f,%.8f,%.8f\n", this.taus[t], this.omegas[o],
+                        this.getLoss(t, o), this.getUncertainty(t, o)));
+            }
+        }
+
+        out.close();
+    }
+
+    public double[] getTaus() {
+        return this.taus;
+    }
+
+    public double[] getOmegas() {
+        return this.omegas;
+    }
+
+    /**
+     * @return (weighted) number of certain, but wrongly predicted labels per tau
+     */
+    public double[] getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * @return (weighted) number of uncertain labels per tau
+     */
+    public double[] getUncertain() {
+        return this.uncertain;
+    }
+
+    public double getTotal() {
+        return this.total;
+    }
+}
@@ -0,0 +1,160 @@
+package com.cs_pum.uncertain_mlc.optimization;
+
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+import com.cs_pum.uncertain_mlc.losses.UncertainLoss;
+import mulan.classifier.MultiLabelOutput;
+import mulan.evaluation.GroundTruth;
+
+
+/**
+ * Adapts tau online to a drifting distribution of confidences. Labeled predictions are added to an
+ * exponentially decayed `ConfidenceHistogram`, and every `interval` predictions tau is re-optimized on it (see
+ * `LossSurface`), so the history never has to be scanned again.
+ *
+ * Instead of multiplying all bins by the decay factor for every prediction, the weight of new predictions grows
+ * by the inverse factor, which is equivalent up to normalization and takes O(1) per label. The histogram is
+ * renormalized once the weights get too large. Re-optimizing takes O(resolution), i.e. O(1) amortized as long
+ * as `interval` is not smaller than the number of bins per label.
+ *
+ * The `observe(…)` methods feed a loss (e.g. a `WindowedUncertainHammingLoss`) prequentially: each prediction
+ * is scored with the current tau first, and only then used to adapt it.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-17
+ */
+public class OnlineTauAdaptation {
+    /* weights are renormalized beyond this value, far from overflowing when summing up the bins */
+    private static final double MAX_WEIGHT = 1e100;
+
+    private final ConfidenceHistogram histogram;
+    private final double growth;
+    private final double omega;
+    private final int interval;
+    private double weight = 1;
+    private double tau;
+    private long count = 0;
+
+    /**
+     * @param resolution number of histogram bins (even), taus are resolved in steps of 1 / resolution
+     * @param halfLife number of predictions after which the weight of a prediction is halved
+     * @param omega weight of an uncertain prediction
+     * @param interval number of predictions between two re-optimizations of tau
+     * @param initialTau tau until the first re-optimization
+     */
+    public OnlineTauAdaptation(int resolution, double halfLife, double omega, int interval, double initialTau) {
+        if (halfLife <= 0) {
+            throw new IllegalArgumentException("half-life needs to be > 0.");
+        }
+
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval needs to be >= 1");
+        }
+
+        this.histogram = new ConfidenceHistogram(resolution);
+        this.growth = Math.pow(2, 1 / halfLife);
+        this.omega = omega;
+        this.interval = interval;
+        this.tau = initialTau;
+    }
+
+    /**
+     * Adds a labeled prediction and re-optimizes tau if due.
+     *
+     * @param confidences confidence per label
+     * @param groundTruth ground truth per label
+     */
+    public void offer(double[] confidences, boolean[] groundTruth) {
+        this.decay();
+
+        for (int j = 0; j < confidences.length; j++) {
+            this.histogram.add(confidences[j], groundTruth[j], this.weight);
+        }
+
+        this.count++;
+
+        if (this.count % this.interval == 0) {
+            this.optimize();
+        }
+    }
+
+    /**
+     * Adds a batch of labeled predictions, re-optimizing tau if due.
+     */
+    public void offer(PredictionMatrix predictions) {
+        double[] confidences = predictions.getConfidences();
+        long[] groundTruth = predictions.getGroundTruth();
+        int numLabels = predictions.getNumLabels();
+
+        for (int i = 0; i < predictions.getNumInstances(); i++) {
+            this.decay();
+
+            for (int k = i * numLabels; k < (i + 1) * numLabels; k++) {
+                this.histogram.add(confidences[k], PredictionMatrix.getBit(groundTruth, k), this.weight);
+            }
+
+            this.count++;
+
+            if (this.count % this.interval == 0) {
+                this.optimize();
+            }
+        }
+    }
+
+    /**
+     * Updates `loss` with a prediction using the current tau, then adapts tau and hands it to `loss`.
+     */
+    public void observe(UncertainLoss loss, MultiLabelOutput prediction, GroundTruth groundTruth) {
+        loss.setTau(this.tau);
+        loss.update(prediction, groundTruth);
+        this.offer(prediction.getConfidences(), groundTruth.getTrueLabels());
+        loss.setTau(this.tau);
+    }
+
+    /**
+     * Updates `loss` with a batch of predictions using the current tau, then adapts tau and hands it to `loss`.
+     * Tau is constant within the batch.
+     */
+    public void observe(UncertainLoss loss, PredictionMatrix predictions) {
+        loss.setTau(this.tau);
+        loss.update(predictions);
+        this.offer(predictions);
+        loss.setTau(this.tau);
+    }
+
+    /**
+     * @return current tau
+     */
+    public double getTau() {
+        return this.tau;
+    }
+
+    /**
+     * @return number of predictions offered
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * @return decayed histogram (normalized such that the latest prediction has a weight of 1)
+     */
+    public ConfidenceHistogram getHistogram() {
+        ConfidenceHistogram normalized = this.histogram.copy();
+        normalized.scale(1 / this.weight);
+
+        return normalized;
+    }
+
+    private void decay() {
+        this.weight *= this.growth;
+
+        if (this.weight > MAX_WEIGHT) {
+            this.histogram.scale(1 / this.weight);
+            this.weight = 1;
+        }
+    }
+
+    private void optimize() {
+        this.tau = new LossSurface(this.histogram, new double[]{this.omega}).getTauCurve(0).getOptimalTau();
+    }
+}
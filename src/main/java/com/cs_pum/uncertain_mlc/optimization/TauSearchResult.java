@@ -0,0 +1,74 @@
+package com.cs_pum.uncertain_mlc.optimization;
+
+
+/**
+ * Result of a search for the tau parameter of an uncertain loss. Besides the optimal tau, the loss and the
+ * uncertainty component for every evaluated candidate are kept, ordered by increasing tau, so that the loss
+ * curve can be inspected or exported afterwards.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-02
+ */
+public class TauSearchResult {
+    private final double[] taus;
+    private final double[] losses;
+    private final double[] uncertainties;
+    private final int optIndex;
+
+    /**
+     * @param taus evaluated candidates in increasing order
+     * @param losses loss for each candidate
+     * @param uncertainties uncertainty component of the loss for each candidate
+     * @param optIndex index of the optimal candidate
+     */
+    public TauSearchResult(double[] taus, double[] losses, double[] uncertainties, int optIndex) {
+        if (taus.length != losses.length || taus.length != uncertainties.length) {
+            throw new IllegalArgumentException("taus, losses and uncertainties need to have the same length");
+        }
+
+        this.taus = taus;
+        this.losses = losses;
+        this.uncertainties = uncertainties;
+        this.optIndex = optIndex;
+    }
+
+    public double getOptimalTau() {
+        return this.taus[this.optIndex];
+    }
+
+    public double getOptimalLoss() {
+        return this.losses[this.optIndex];
+    }
+
+    public double getOptimalUncertainty() {
+        return this.uncertainties[this.optIndex];
+    }
+
+    public int getOptimalIndex() {
+        return this.optIndex;
+    }
+
+    public int getNumCandidates() {
+        return this.taus.length;
+    }
+
+    public double[] getTaus() {
+        return this.taus;
+    }
+
+    public double[] getLosses() {
+        return this.losses;
+    }
+
+    public double[] getUncertainties() {
+        return this.uncertainties;
+    }
+
+    @Override
+    public String toString() {
+        return "tau: " + String.format("%.6f", this.getOptimalTau())
+                + ", loss: " + String.format("%.6f", this.getOptimalLoss())
+                + ", uncertainty: " + String.format("%.6f", this.getOptimalUncertainty())
+                + " (" + this.taus.length + " candidates)";
+    }
+}
@@ -0,0 +1,198 @@
+package com.cs_pum.uncertain_mlc.optimization;
+
+import java.io.Serializable;
+
+
+/**
+ * Fixed-memory sketch for optimizing tau over an unbounded stream of predictions. Predictions are fed one at a
+ * time and only a `ConfidenceHistogram` per label is kept, i.e. `2 * numLabels * resolution` doubles regardless
+ * of the number of predictions. Sketches of the same shape, e.g. from separate workers or days, can be merged.
+ *
+ * Queries are answered for the taus on the bin edges (steps of 1 / resolution), where the loss is known exactly
+ * (see `LossSurface`). Between two edges only the labels in the two bins adjacent to the edges `tau` and
+ * `1 - tau` change their state, so the loss of the best edge exceeds the optimal loss over all taus by at most
+ * `max(omega, 1 - omega)` times the largest fraction of labels in such a pair of bins (see `lossErrorBound(…)`).
+ *
+ * @author Christian Schulze
+ * @since  2018-07-13
+ */
+public class TauSketch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final ConfidenceHistogram[] histograms;
+    private long count = 0;
+
+    /**
+     * @param numLabels number of labels per prediction
+     * @param resolution number of histogram bins (even), taus are resolved in steps of 1 / resolution
+     */
+    public TauSketch(int numLabels, int resolution) {
+        this.histograms = new ConfidenceHistogram[numLabels];
+
+        for (int j = 0; j < numLabels; j++) {
+            this.histograms[j] = new ConfidenceHistogram(resolution);
+        }
+    }
+
+    /**
+     * Adds a single prediction.
+     *
+     * @param confidences confidence per label
+     * @param groundTruth ground truth per label
+     */
+    public void offer(double[] confidences, boolean[] groundTruth) {
+        if (confidences.length != this.histograms.length || groundTruth.length != this.histograms.length) {
+            throw new IllegalArgumentException("prediction does not have " + this.histograms.length + " labels");
+        }
+
+        for (int j = 0; j < confidences.length; j++) {
+            this.histograms[j].add(confidences[j], groundTruth[j]);
+        }
+
+        this.count++;
+    }
+
+    /**
+     * Adds a single prediction, with the ground truth as written by the experiments (values >= .5 are relevant).
+     */
+    public void offer(double[] confidences, double[] groundTruth) {
+        if (confidences.length != this.histograms.length || groundTruth.length != this.histograms.length) {
+            throw new IllegalArgumentException("prediction does not have " + this.histograms.length + " labels");
+        }
+
+        for (int j = 0; j < confidences.length; j++) {
+            this.histograms[j].add(confidences[j], groundTruth[j] >= .5);
+        }
+
+        this.count++;
+    }
+
+    /**
+     * Merges another sketch into this one.
+     *
+     * @param other sketch with the same number of labels and resolution
+     * @return this sketch
+     */
+    public TauSketch merge(TauSketch other) {
+        if (other.histograms.length != this.histograms.length) {
+            throw new IllegalArgumentException("sketches with a different number of labels can not be merged");
+        }
+
+        for (int j = 0; j < this.histograms.length; j++) {
+            this.histograms[j].merge(other.histograms[j]);
+        }
+
+        this.count += other.count;
+
+        return this;
+    }
+
+    /**
+     * @return number of predictions offered
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    public int getNumLabels() {
+        return this.histograms.length;
+    }
+
+    public int getResolution() {
+        return this.histograms[0].getResolution();
+    }
+
+    public ConfidenceHistogram getHistogram(int label) {
+        return this.histograms[label];
+    }
+
+    /**
+     * @return histogram over the confidences of all labels
+     */
+    public ConfidenceHistogram getHistogram() {
+        ConfidenceHistogram histogram = new ConfidenceHistogram(this.getResolution());
+
+        for (ConfidenceHistogram h : this.histograms) {
+            histogram.merge(h);
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Returns the loss curve over the bin-edge taus and the optimal one among them.
+     *
+     * @param omega weight of an uncertain prediction
+     * @return loss curve
+     */
+    public TauSearchResult optimalTau(double omega) {
+        this.checkNotEmpty();
+
+        return new LossSurface(this.getHistogram(), new double[]{omega}).getTauCurve(0);
+    }
+
+    /**
+     * Returns the optimal symmetric tau per label among the bin-edge taus.
+     *
+     * @param omega weight of an uncertain prediction
+     * @return thresholds per label
+     */
+    public LabelThresholds optimalLabelThresholds(double omega) {
+        this.checkNotEmpty();
+
+        int numLabels = this.histograms.length;
+        double[] lower = new double[numLabels];
+        double[] upper = new double[numLabels];
+        double[] losses = new double[numLabels];
+        double[] uncertainties = new double[numLabels];
+
+        for (int j = 0; j < numLabels; j++) {
+            TauSearchResult result = new LossSurface(this.histograms[j], new double[]{omega}).getTauCurve(0);
+
+            lower[j] = result.getOptimalTau();
+            upper[j] = 1 - result.getOptimalTau();
+            losses[j] = result.getOptimalLoss();
+            uncertainties[j] = result.getOptimalUncertainty();
+        }
+
+        return new LabelThresholds(lower, upper, losses, uncertainties);
+    }
+
+    /**
+     * Returns a bound on how much the loss at `optimalTau(omega)` may exceed the optimal loss over all taus in
+     * (0, 1/2].
+     *
+     * @param omega weight of an uncertain prediction
+     * @return bound on the absolute error of the optimal loss
+     */
+    public double lossErrorBound(double omega) {
+        this.checkNotEmpty();
+
+        ConfidenceHistogram histogram = this.getHistogram();
+        int resolution = histogram.getResolution();
+        double[] relevant = histogram.getRelevant();
+        double[] irrelevant = histogram.getIrrelevant();
+        double maxMass = 0;
+
+        // for tau in (i / resolution, (i + 1) / resolution] only bins i and resolution - 1 - i are affected
+        for (int i = 0; i < resolution / 2; i++) {
+            int mirrored = resolution - 1 - i;
+            double mass = relevant[i] + irrelevant[i];
+
+            if (mirrored != i) {
+                mass += relevant[mirrored] + irrelevant[mirrored];
+            }
+
+            maxMass = Math.max(maxMass, mass);
+        }
+
+        // a label switching between certain (loss 0 or 1) and uncertain (loss omega) changes its loss by at most
+        return Math.max(omega, 1 - omega) * maxMass / histogram.getTotalWeight();
+    }
+
+    private void checkNotEmpty() {
+        if (this.count == 0) {
+            throw new IllegalStateException("sketch has not been fed with data yet");
+        }
+    }
+}
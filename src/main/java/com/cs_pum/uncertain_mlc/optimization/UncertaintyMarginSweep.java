@@ -0,0 +1,235 @@
+package com.cs_pum.uncertain_mlc.optimization;
+
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Exact optimization of the symmetric tau of the uncertain hamming loss.
+ *
+ * A label with confidence `p` is considered uncertain iff `tau <= p <= 1 - tau`, i.e. iff tau does not exceed
+ * its critical value `min(p, 1 - p)`, which is 1/2 minus the distance of `p` to 1/2 (up to the rounding of
+ * `1 - tau`, see `criticalTau(…)`). The loss is hence a step function of tau that only changes at these
+ * critical values. All critical values are sorted once, split by whether the label would be mispredicted if it
+ * was considered certain, and the sorted order is walked with running counts of errors and abstentions. This
+ * yields the loss for every distinct tau in O(nL log nL), instead of one full pass over the predictions per
+ * candidate as in a grid search.
+ *
+ * @author Christian Schulze
+ * @since  2018-07-02
+ */
+public class UncertaintyMarginSweep {
+    /* sorted critical taus of the labels that are mispredicted by the 1/2-threshold bipartition */
+    private final double[] errorMargins;
+    /* sorted critical taus of the labels that are predicted correctly by the 1/2-threshold bipartition */
+    private final double[] correctMargins;
+    private final long numLabels;
+
+    /**
+     * @param confidences confidences (probability that the label equals one), one array per instance
+     * @param groundTruth ground truth, one array per instance (values >= .5 are considered relevant)
+     */
+    public UncertaintyMarginSweep(List<double[]> confidences, List<double[]> groundTruth) {
+        if (confidences.size() != groundTruth.size()) {
+            throw new IllegalArgumentException("number of confidences and ground truths differs");
+        }
+
+        int total = 0;
+
+        for (double[] c : confidences) {
+            total += c.length;
+        }
+
+        double[] errors = new double[total];
+        double[] correct = new double[total];
+        int noErrors = 0;
+        int noCorrect = 0;
+
+        for (int i = 0; i < confidences.size(); i++) {
+            double[] c = confidences.get(i);
+            double[] gt = groundTruth.get(i);
+
+            for (int j = 0; j < c.length; j++) {
+                double margin = criticalTau(c[j]);
+
+                if ((c[j] >= .5) != (gt[j] >= .5)) {
+                    errors[noErrors++] = margin;
+                } else {
+                    correct[noCorrect++] = margin;
+                }
+            }
+        }
+
+        this.errorMargins = Arrays.copyOf(errors, noErrors);
+        this.correctMargins = Arrays.copyOf(correct, noCorrect);
+        this.numLabels = total;
+
+        Arrays.sort(this.errorMargins);
+        Arrays.sort(this.correctMargins);
+    }
+
+    /**
+     * @param predictions predictions to optimize tau for
+     */
+    public UncertaintyMarginSweep(PredictionMatrix predictions) {
+        this(predictions, 0, predictions.getNumLabels());
+    }
+
+    /**
+     * Sweeps over the labels `fromLabel` (inclusive) to `toLabel` (exclusive) of all instances only.
+     */
+    private UncertaintyMarginSweep(PredictionMatrix predictions, int fromLabel, int toLabel) {
+        int total = predictions.getNumInstances() * (toLabel - fromLabel);
+        double[] errors = new double[total];
+        double[] correct = new double[total];
+        int noErrors = 0;
+        int noCorrect = 0;
+
+        for (int i = 0; i < predictions.getNumInstances(); i++) {
+            for (int j = fromLabel; j < toLabel; j++) {
+                double p = predictions.getConfidence(i, j);
+                double margin = criticalTau(p);
+
+                if ((p >= .5) != predictions.isRelevant(i, j)) {
+                    errors[noErrors++] = margin;
+                } else {
+                    correct[noCorrect++] = margin;
+                }
+            }
+        }
+
+        this.errorMargins = Arrays.copyOf(errors, noErrors);
+        this.correctMargins = Arrays.copyOf(correct, noCorrect);
+        this.numLabels = total;
+
+        Arrays.sort(this.errorMargins);
+        Arrays.sort(this.correctMargins);
+    }
+
+    /**
+     * Creates a sweep over a single label of all instances, e.g. to optimize tau per label.
+     *
+     * @param predictions predictions
+     * @param label index of the label
+     * @return sweep for the label
+     */
+    public static UncertaintyMarginSweep forLabel(PredictionMatrix predictions, int label) {
+        return new UncertaintyMarginSweep(predictions, label, label + 1);
+    }
+
+    /**
+     * Computes the uncertain hamming loss for every distinct tau in (0, 1/2].
+     *
+     * The loss is constant between two consecutive critical values `a < b`, i.e. for all tau in `(a, b]`. Each
+     * such interval is represented by its midpoint, so the returned candidates do not sit on a confidence
+     * observed in the data. Like the grid search, the first (smallest) tau attaining the minimal loss is
+     * considered optimal, as it keeps the largest margin around 1/2.
+     *
+     * @param omega weight of an uncertain prediction
+     * @return loss and uncertainty for each interval, ordered by increasing tau
+     */
+    public TauSearchResult sweep(double omega) {
+        if (this.numLabels == 0) {
+            throw new IllegalStateException("sweep has not been fed with data");
+        }
+
+        int maxCandidates = this.errorMargins.length + this.correctMargins.length + 1;
+        double[] taus = new double[maxCandidates];
+        double[] losses = new double[maxCandidates];
+        double[] uncertainties = new double[maxCandidates];
+        int noCandidates = 0;
+        int optIndex = 0;
+
+        // labels with a critical value of (at most) zero are certain for every tau > 0
+        int e = upperBound(this.errorMargins, 0, 0.);
+        int c = upperBound(this.correctMargins, 0, 0.);
+        double lower = 0;
+
+        while (lower < .5) {
+            double upper = .5;
+
+            if (e < this.errorMargins.length) {
+                upper = Math.min(upper, this.errorMargins[e]);
+            }
+
+            if (c < this.correctMargins.length) {
+                upper = Math.min(upper, this.correctMargins[c]);
+            }
+
+            // every label with a critical value > lower is uncertain within (lower, upper]
+            double uncertain = this.numLabels - e - c;
+            double loss = (e + omega * uncertain) / this.numLabels;
+
+            double tau = (lower + upper) / 2;
+
+            // for adjacent doubles the midpoint might round onto the (excluded) lower bound
+            taus[noCandidates] = tau > lower ? tau : upper;
+            losses[noCandidates] = loss;
+            uncertainties[noCandidates] = omega * uncertain / this.numLabels;
+
+            if (loss < losses[optIndex]) {
+                optIndex = noCandidates;
+            }
+
+            noCandidates++;
+
+            e = upperBound(this.errorMargins, e, upper);
+            c = upperBound(this.correctMargins, c, upper);
+            lower = upper;
+        }
+
+        return new TauSearchResult(Arrays.copyOf(taus, noCandidates), Arrays.copyOf(losses, noCandidates),
+                Arrays.copyOf(uncertainties, noCandidates), optIndex);
+    }
+
+    public long getNumLabels() {
+        return this.numLabels;
+    }
+
+    /**
+     * Returns the largest tau for which a label with confidence `p` is still considered uncertain, i.e. for which
+     * `tau <= p <= 1 - tau` holds. For `p > 1/2` this is `1 - p`, corrected to the rounding of `1 - tau` as
+     * evaluated by `UncertainHammingLoss`, so that the sweep and the loss agree on every label.
+     *
+     * @param p confidence
+     * @return critical tau
+     */
+    public static double criticalTau(double p) {
+        if (p <= .5) {
+            return p;
+        }
+
+        // 1 - p is exact for p in [1/2, 1], but 1 - tau might still round up to p for slightly larger taus.
+        // the predicate is monotone in tau, so the largest such tau is found by bisecting the (ordered) bit
+        // patterns of the non-negative doubles between 1 - p (holds) and 1 - p + ulp(p) (does not hold).
+        long lo = Double.doubleToLongBits(1 - p);
+        long hi = Double.doubleToLongBits(1 - p + Math.ulp(p));
+
+        while (hi - lo > 1) {
+            long mid = lo + (hi - lo) / 2;
+
+            if (1 - Double.longBitsToDouble(mid) >= p) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return Double.longBitsToDouble(lo);
+    }
+
+    /**
+     * Returns the first index >= `from` of a sorted array holding a value > `value`.
+     */
+    private static int upperBound(double[] sorted, int from, double value) {
+        int i = from;
+
+        while (i < sorted.length && sorted[i] <= value) {
+            i++;
+        }
+
+        return i;
+    }
+}
@@ -0,0 +1,69 @@
+import com.cs_pum.uncertain_mlc.common.LabelMatrix;
+import com.cs_pum.uncertain_mlc.common.LabelRankings;
+import com.cs_pum.uncertain_mlc.io.ArffLabelReduction;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestArffLabelReduction {
+    @Test
+    public void testReduction() throws Exception {
+        File in = File.createTempFile("dataset-", ".arff");
+        File out = File.createTempFile("dataset-reduced-", ".arff");
+        in.deleteOnExit();
+        out.deleteOnExit();
+
+        // meka layout: three labels first, then two features, dense and sparse rows mixed
+        Files.write(in.toPath(), Arrays.asList(
+                "@relation 'test: -C 3'",
+                "",
+                "@attribute a {0,1}",
+                "@attribute b {0,1}",
+                "@attribute c {0,1}",
+                "@attribute x numeric",
+                "@attribute y string",
+                "",
+                "@data",
+                "1,0,1,0.5,'p, q'",
+                "% comment",
+                "{0 1,3 2.5}",
+                "0,1,1,?,r",
+                "{2 1,4 's'}"
+        ), StandardCharsets.UTF_8);
+
+        ArffLabelReduction reduction = new ArffLabelReduction(in.getPath(), 3, true);
+        LabelMatrix labels = reduction.getLabels();
+
+        assertEquals(4, labels.getNumInstances());
+        assertArrayEquals(new int[]{2, 1, 3}, labels.getCounts());
+        assertArrayEquals(new int[]{0, 2}, reduction.reduce(out.getPath(), 2));
+
+        List<String> lines = Files.readAllLines(out.toPath(), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList(
+                "@relation 'test: -C 2'",
+                "",
+                "@attribute a {0,1}",
+                "@attribute c {0,1}",
+                "@attribute x numeric",
+                "@attribute y string",
+                "",
+                "@data",
+                "1,1,0.5,'p, q'",
+                "% comment",
+                "{0 1,2 2.5}",
+                "0,1,?,r",
+                "{1 1,3 's'}"
+        ), lines);
+
+        // rankings that scan whole columns see only the words of the instances
+        assertArrayEquals(new int[]{0, 2}, reduction.reduce(out.getPath(), 2, LabelRankings.coverage()));
+        assertEquals(1, labels.getColumn(0).length);
+    }
+}
@@ -0,0 +1,158 @@
+import com.cs_pum.uncertain_mlc.examples.DatasetScheduler;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestDatasetScheduler {
+    private static File writeDataset(int numInstances) throws Exception {
+        File file = File.createTempFile("dataset-", ".arff");
+        file.deleteOnExit();
+
+        List<String> lines = new ArrayList<>(Arrays.asList(
+                "@relation test",
+                "@attribute x numeric",
+                "@attribute y numeric",
+                "@attribute a {0,1}",
+                "@attribute b {0,1}",
+                "@data"));
+
+        for (int i = 0; i < numInstances; i++) {
+            lines.add("0.5,1.5," + (i % 2) + ",1");
+        }
+
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+
+        return file;
+    }
+
+    @Test
+    public void testLargestFirst() throws Exception {
+        // a single core, so the data sets run one after another in the order they are started
+        DatasetScheduler scheduler = new DatasetScheduler(1L << 30, 1);
+        File small = writeDataset(10);
+        File medium = writeDataset(100);
+        File large = writeDataset(1000);
+        assertTrue(scheduler.estimateMemory(large, 2) > scheduler.estimateMemory(medium, 2));
+        assertTrue(scheduler.estimateMemory(medium, 2) > scheduler.estimateMemory(small, 2));
+
+        scheduler.add("small", small, 2);
+        scheduler.add("large", large, 2);
+        scheduler.add("medium", medium, 2);
+
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        Map<String, Long> wallTimes = scheduler.run((dataset, out, executor) -> started.add(dataset));
+
+        assertEquals(Arrays.asList("large", "medium", "small"), started);
+        assertEquals(Arrays.asList("small", "large", "medium"), new ArrayList<>(wallTimes.keySet()));
+    }
+
+    @Test
+    public void testHeapAdmission() throws Exception {
+        File small = writeDataset(10);
+        File medium = writeDataset(100);
+        File large = writeDataset(1000);
+
+        // the large data set fits together with the small one, but not with the medium one
+        DatasetScheduler estimator = new DatasetScheduler(1L << 30, 3);
+        estimator.setThreadsPerDataset(1);
+        long budget = estimator.estimateMemory(large, 2) + estimator.estimateMemory(small, 2);
+
+        DatasetScheduler scheduler = new DatasetScheduler(budget, 3);
+        scheduler.setThreadsPerDataset(1);
+        scheduler.add("small", small, 2);
+        scheduler.add("medium", medium, 2);
+        scheduler.add("large", large, 2);
+
+        CountDownLatch smallStarted = new CountDownLatch(1);
+        AtomicBoolean mediumStarted = new AtomicBoolean(false);
+        AtomicBoolean largeDone = new AtomicBoolean(false);
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        Map<String, Long> wallTimes = scheduler.run((dataset, out, executor) -> {
+            if (dataset.equals("large")) {
+                // the small data set fills in next to the large one, the medium one has to wait
+                if (!smallStarted.await(10, TimeUnit.SECONDS) || mediumStarted.get()) {
+                    failures.add("small data set was not started next to the large one");
+                }
+
+                largeDone.set(true);
+            } else if (dataset.equals("small")) {
+                smallStarted.countDown();
+            } else {
+                mediumStarted.set(true);
+
+                if (!largeDone.get()) {
+                    failures.add("medium data set was started next to the large one");
+                }
+            }
+        });
+
+        assertEquals(Collections.emptyList(), failures);
+        assertTrue(mediumStarted.get());
+
+        for (long wallTime : wallTimes.values()) {
+            assertTrue(wallTime >= 0);
+        }
+    }
+
+    @Test
+    public void testCoreBudget() throws Exception {
+        DatasetScheduler scheduler = new DatasetScheduler(1L << 30, 2);
+        scheduler.setThreadsPerDataset(1);
+
+        File dataset = writeDataset(10);
+        scheduler.add("a", dataset, 2);
+        scheduler.add("b", dataset, 2);
+        scheduler.add("failing", dataset, 2);
+
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        Map<String, Long> wallTimes = scheduler.run((name, out, executor) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+
+            try {
+                if (name.equals("failing")) {
+                    throw new IllegalStateException(name);
+                }
+
+                // both data sets fit into the budget at the same time, each on a pool of its own
+                bothStarted.countDown();
+
+                if (!bothStarted.await(10, TimeUnit.SECONDS)) {
+                    failures.add(name + " was not run next to the other data set");
+                }
+
+                assertNotNull(executor);
+                assertEquals(1, (int) executor.submit(() -> 1).get());
+                out.println(name);
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+
+        assertEquals(Collections.emptyList(), failures);
+        assertFalse(maxRunning.get() > 2);
+        assertTrue(wallTimes.get("a") >= 0);
+        assertTrue(wallTimes.get("b") >= 0);
+        assertEquals(-1, (long) wallTimes.get("failing"));
+    }
+}
@@ -0,0 +1,163 @@
+import com.cs_pum.uncertain_mlc.common.LabelMatrix;
+import com.cs_pum.uncertain_mlc.common.LabelMetadata;
+import com.cs_pum.uncertain_mlc.common.LabelRankings;
+import mulan.data.MultiLabelInstances;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestLabelMatrix {
+    @Test
+    public void testCounts() {
+        Random random = new Random(2018);
+        List<double[]> labels = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            double[] row = new double[7];
+
+            for (int j = 0; j < row.length; j++) {
+                row[j] = random.nextDouble() < (j + 1) / 10. ? 1 : 0;
+            }
+
+            labels.add(row);
+        }
+
+        LabelMatrix matrix = LabelMatrix.fromRows(labels);
+        assertEquals(1000, matrix.getNumInstances());
+        assertEquals(7, matrix.getNumLabels());
+
+        for (int a = 0; a < 7; a++) {
+            int count = 0;
+
+            for (double[] row : labels) {
+                count += row[a] >= .5 ? 1 : 0;
+            }
+
+            assertEquals(count, matrix.getCount(a));
+            assertEquals(count, matrix.getCounts()[a]);
+
+            for (int b = 0; b < 7; b++) {
+                int both = 0;
+
+                for (double[] row : labels) {
+                    both += row[a] >= .5 && row[b] >= .5 ? 1 : 0;
+                }
+
+                assertEquals(both, matrix.getCooccurrence(a, b));
+            }
+        }
+    }
+
+    @Test
+    public void testDependencies() {
+        Random random = new Random(2018);
+        List<double[]> labels = new ArrayList<>();
+
+        // label 1 copies label 0, label 2 negates it, label 3 is independent
+        for (int i = 0; i < 4000; i++) {
+            double a = random.nextBoolean() ? 1 : 0;
+            labels.add(new double[]{a, a, 1 - a, random.nextBoolean() ? 1 : 0});
+        }
+
+        LabelMatrix matrix = LabelMatrix.fromRows(labels);
+        int[][] cooccurrences = matrix.getCooccurrences();
+        double[][] conditional = LabelMetadata.getConditionalProbabilities(cooccurrences);
+        double[][] mi = LabelMetadata.getMutualInformation(cooccurrences, matrix.getNumInstances());
+
+        for (int a = 0; a < 4; a++) {
+            for (int b = 0; b < 4; b++) {
+                assertEquals(matrix.getCooccurrence(a, b), cooccurrences[a][b]);
+                assertEquals(mi[a][b], mi[b][a], 0);
+            }
+        }
+
+        assertEquals(1, conditional[0][1], 0);
+        assertEquals(0, conditional[0][2], 0);
+        assertEquals(.5, conditional[0][3], .05);
+
+        // entropy of a fair coin on the diagonal, full dependency for copies and negations
+        assertEquals(1, mi[0][0], 1e-3);
+        assertEquals(mi[0][0], mi[0][1], 1e-12);
+        assertEquals(mi[0][0], mi[0][2], 1e-12);
+        assertEquals(0, mi[0][3], 1e-2);
+    }
+
+    @Test
+    public void testRankings() {
+        // ties are resolved in favour of lower indices, exactly k labels are selected
+        assertArrayEquals(new int[]{0, 1, 3}, LabelRankings.topK(new double[]{2, 2, 1, 2, 2, 0}, 3));
+        assertArrayEquals(new int[]{1, 4}, LabelRankings.topK(new double[]{1, 5, 1, 1, 3}, 2));
+        assertArrayEquals(new int[]{0, 1}, LabelRankings.topK(new double[]{1, 1}, 5));
+
+        List<double[]> labels = new ArrayList<>();
+
+        // label 0: 6 of 8 instances, label 1: instances 0-3, label 2: instances 4-7, label 3: instances 0-2
+        for (int i = 0; i < 8; i++) {
+            labels.add(new double[]{i < 6 ? 1 : 0, i < 4 ? 1 : 0, i >= 4 ? 1 : 0, i < 3 ? 1 : 0});
+        }
+
+        LabelMatrix matrix = LabelMatrix.fromRows(labels);
+        assertArrayEquals(new int[]{0, 1}, LabelRankings.frequency().select(matrix, 2));
+        assertArrayEquals(new int[]{1, 2}, LabelRankings.entropy().select(matrix, 2));
+        assertArrayEquals(new int[]{0, 2}, LabelRankings.coverage().select(matrix, 2));
+    }
+
+    static MultiLabelInstances readDataset(List<String> rows) throws Exception {
+        File file = File.createTempFile("dataset-", ".arff");
+        file.deleteOnExit();
+
+        // meka layout: three labels first, then two features
+        List<String> lines = new ArrayList<>(Arrays.asList(
+                "@relation test",
+                "@attribute a {0,1}",
+                "@attribute b {0,1}",
+                "@attribute c {0,1}",
+                "@attribute x numeric",
+                "@attribute y numeric",
+                "@data"));
+        lines.addAll(rows);
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+
+        try (InputStream in = new FileInputStream(file)) {
+            return new MultiLabelInstances(in, 3, true);
+        }
+    }
+
+    static final List<String> DENSE = Arrays.asList(
+            "1,0,1,0.5,1",
+            "1,1,?,0,2",
+            "1,0,1,1.5,0",
+            "0,0,0,2,3");
+
+    static final List<String> SPARSE = Arrays.asList(
+            "{0 1,2 1,3 0.5,4 1}",
+            "{0 1,1 1,2 ?,4 2}",
+            "{0 1,2 1,3 1.5}",
+            "{3 2,4 3}");
+
+    @Test
+    public void testDenseAndSparse() throws Exception {
+        LabelMatrix dense = LabelMatrix.build(readDataset(DENSE), true);
+        LabelMatrix sparse = LabelMatrix.build(readDataset(SPARSE), true);
+
+        assertEquals(4, sparse.getNumInstances());
+        assertEquals(3, sparse.getNumLabels());
+        // a missing label is not relevant
+        assertArrayEquals(new int[]{3, 1, 2}, dense.getCounts());
+
+        for (int j = 0; j < 3; j++) {
+            assertArrayEquals(dense.getColumn(j), sparse.getColumn(j));
+        }
+    }
+}
@@ -1,4 +1,6 @@
+import com.cs_pum.uncertain_mlc.common.LabelMatrix;
 import com.cs_pum.uncertain_mlc.common.LabelSpaceReduction;
+import com.cs_pum.uncertain_mlc.common.LabelSpaceView;
 import mulan.data.MultiLabelInstances;
 import org.junit.Before;
 import org.junit.Test;
@@ -6,9 +8,15 @@ import org.junit.Test;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class TestLabelSpaceReduction {
     HashMap<String, Integer> labelCounts;
@@ -85,4 +93,53 @@ public class TestLabelSpaceReduction {
             }
         }
     }
+
+    @Test
+    public void testMissingLabels() throws Exception {
+        for (List<String> rows : Arrays.asList(TestLabelMatrix.DENSE, TestLabelMatrix.SPARSE)) {
+            MultiLabelInstances data = LabelSpaceReduction.reduceLabelSpace(TestLabelMatrix.readDataset(rows), 2,
+                    true);
+
+            // labels a and c are retained, the missing value of c in the second instance is copied as is
+            assertEquals(2, data.getNumLabels());
+            assertEquals(4, data.getDataSet().numAttributes());
+            assertTrue(data.getDataSet().get(1).isMissing(1));
+            assertEquals(1, data.getDataSet().get(0).value(1), 0);
+            assertEquals(0, data.getDataSet().get(3).value(0), 0);
+        }
+    }
+
+    @Test
+    public void testView() throws Exception {
+        for (List<String> rows : Arrays.asList(TestLabelMatrix.DENSE, TestLabelMatrix.SPARSE)) {
+            MultiLabelInstances data = TestLabelMatrix.readDataset(rows);
+            LabelSpaceView view = LabelSpaceReduction.view(data, 2, true);
+            assertFalse(view.isMaterialized());
+
+            MultiLabelInstances reduced = view.materialize();
+            assertSame(reduced, view.materialize());
+
+            // statistics of the view agree with those of the copied data
+            int[] labelIndices = reduced.getLabelIndices();
+            String[] names = view.getLabelNames();
+            assertArrayEquals(new String[]{"a", "c"}, names);
+            assertArrayEquals(LabelMatrix.build(reduced, true).getCounts(), view.getLabelCounts());
+
+            for (int j = 0; j < labelIndices.length; j++) {
+                assertEquals(reduced.getDataSet().attribute(labelIndices[j]).name(), names[j]);
+            }
+
+            for (int i = 0; i < view.getNumInstances(); i++) {
+                double[] groundTruth = view.getGroundTruth(i);
+
+                for (int j = 0; j < labelIndices.length; j++) {
+                    double value = reduced.getDataSet().get(i).value(labelIndices[j]);
+                    assertEquals(value >= .5 ? 1 : 0, groundTruth[j], 0);
+                }
+            }
+
+            // nothing to drop, so the original data are not copied
+            assertSame(data, LabelSpaceReduction.view(data, 3, true).materialize());
+        }
+    }
 }
@@ -0,0 +1,182 @@
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+import com.cs_pum.uncertain_mlc.io.PredictionCSVReader;
+import com.cs_pum.uncertain_mlc.io.PredictionStore;
+import com.cs_pum.uncertain_mlc.io.PredictionStoreWriter;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TestPredictionStore {
+    @Test
+    public void testRoundTrip() throws Exception {
+        File file = File.createTempFile("predictions-", ".bin");
+        file.deleteOnExit();
+
+        String[] labelNames = {"label_a", "label_b", "label_c", "label_d", "label_e"};
+        TestPredictions data = TestPredictions.randomPredictions(2018, 1000, labelNames.length, false);
+
+        try (PredictionStoreWriter writer = new PredictionStoreWriter(file.getPath(), labelNames)) {
+            for (int i = 0; i < data.size(); i++) {
+                writer.write(data.confidences.get(i), data.groundTruth.get(i), i % 3);
+            }
+        }
+
+        try (PredictionStore store = new PredictionStore(file.getPath())) {
+            assertArrayEquals(labelNames, store.getLabelNames());
+            assertEquals(data.size(), store.getNumRows());
+
+            PredictionMatrix matrix = store.toPredictionMatrix();
+
+            for (int i = 0; i < data.size(); i++) {
+                assertEquals(i % 3, store.getFold(i));
+
+                for (int j = 0; j < labelNames.length; j++) {
+                    assertEquals((float) data.confidences.get(i)[j], store.getConfidence(i, j), 0);
+                    assertEquals(data.groundTruth.get(i)[j] == 1, store.isRelevant(i, j));
+                    assertEquals(data.groundTruth.get(i)[j] == 1, matrix.isRelevant(i, j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        File file = File.createTempFile("predictions-", ".bin");
+        file.deleteOnExit();
+
+        // several batches, and more labels than fit into one word of ground truth
+        String[] labelNames = new String[70];
+        TestPredictions data = TestPredictions.randomPredictions(2018, 3000, labelNames.length, false);
+        double[] confidences = new double[labelNames.length];
+        double[] groundTruth = new double[labelNames.length];
+
+        for (int j = 0; j < labelNames.length; j++) {
+            labelNames[j] = "label_" + j;
+        }
+
+        PredictionStoreWriter writer = new PredictionStoreWriter(file.getPath(), labelNames);
+
+        for (int i = 0; i < 3000; i++) {
+            // the arrays are reused, as by `PredictionCSVReader.stream`
+            System.arraycopy(data.confidences.get(i), 0, confidences, 0, labelNames.length);
+            System.arraycopy(data.groundTruth.get(i), 0, groundTruth, 0, labelNames.length);
+            writer.write(confidences, groundTruth, i / 1000);
+        }
+
+        try {
+            new PredictionStore(file.getPath()).close();
+            fail("a file that has not been closed must not be read");
+        } catch (IOException e) {
+            // expected
+        }
+
+        writer.close();
+
+        // the spill files of the sections are gone, only the file itself is left
+        File[] spills = file.getAbsoluteFile().getParentFile().listFiles(
+                (directory, name) -> name.startsWith(file.getName() + "."));
+        assertEquals(0, spills.length);
+
+        try (PredictionStore store = new PredictionStore(file.getPath())) {
+            assertEquals(3000, store.getNumRows());
+            PredictionMatrix matrix = store.toPredictionMatrix();
+
+            for (int i = 0; i < 3000; i++) {
+                assertEquals(i / 1000, store.getFold(i));
+
+                for (int j = 0; j < labelNames.length; j++) {
+                    assertEquals((float) data.confidences.get(i)[j], store.getConfidence(i, j), 0);
+                    assertEquals(data.groundTruth.get(i)[j] == 1, store.isRelevant(i, j));
+                    assertEquals(data.groundTruth.get(i)[j] == 1, matrix.isRelevant(i, j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParseDouble() {
+        Random random = new Random(2018);
+        String[] cells = {"0", "1", "-0", "0.5", "1.0", "0.00000001", "12345678901234567890", "1e-5", "-2.5E+3",
+                "0.1234567890123456789", "3.", ".25", "NaN", "1e400"};
+        List<String> values = new ArrayList<>(Arrays.asList(cells));
+
+        for (int i = 0; i < 10000; i++) {
+            values.add(Double.toString(random.nextDouble()));
+            values.add(new DecimalFormat("#.########").format(random.nextDouble()));
+        }
+
+        for (String value : values) {
+            ByteBuffer buffer = ByteBuffer.wrap(value.getBytes(StandardCharsets.US_ASCII));
+            double parsed = PredictionCSVReader.parseDouble(buffer, 0, buffer.limit());
+
+            assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)), Double.doubleToLongBits(parsed));
+        }
+    }
+
+    @Test
+    public void testCSVReader() throws Exception {
+        File file = File.createTempFile("predictions-", ".csv");
+        file.deleteOnExit();
+
+        TestPredictions data = TestPredictions.randomPredictions(2018, 5000, 3, false);
+        List<double[]> confidences = new ArrayList<>();
+        List<double[]> groundTruth = data.groundTruth;
+        DecimalFormat formatter = new DecimalFormat("#.########");
+
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            out.write("pred_a,pred_b,pred_c,fold,a,b,c\n");
+
+            for (int i = 0; i < data.size(); i++) {
+                // the confidences are read back as written, i.e. rounded to the decimals of the file
+                double[] c = new double[3];
+                double[] gt = groundTruth.get(i);
+                StringBuilder line = new StringBuilder();
+
+                for (int j = 0; j < 3; j++) {
+                    c[j] = Double.parseDouble(formatter.format(data.confidences.get(i)[j]));
+                    line.append(formatter.format(c[j])).append(',');
+                }
+
+                line.append(i % 3).append(',').append(gt[0]).append(',').append(gt[1]).append(',').append(gt[2]);
+                out.write(line.append(i % 2 == 0 ? "\n" : "\r\n").toString());
+                confidences.add(c);
+            }
+        }
+
+        PredictionCSVReader reader = new PredictionCSVReader(file.getPath());
+        assertArrayEquals(new String[]{"a", "b", "c"}, reader.getLabelNames());
+
+        List<double[]> streamed = new ArrayList<>();
+        List<Integer> folds = new ArrayList<>();
+        reader.stream((c, gt, fold) -> {
+            streamed.add(c.clone());
+            folds.add(fold);
+        });
+
+        assertEquals(confidences.size(), streamed.size());
+        PredictionMatrix expected = PredictionMatrix.fromLists(confidences, groundTruth);
+        PredictionMatrix parallel = reader.readParallel(7);
+
+        for (int i = 0; i < confidences.size(); i++) {
+            assertArrayEquals(confidences.get(i), streamed.get(i), 0);
+            assertEquals(i % 3, (int) folds.get(i));
+        }
+
+        assertArrayEquals(expected.getConfidences(), parallel.getConfidences(), 0);
+        assertArrayEquals(expected.getGroundTruth(), parallel.getGroundTruth());
+    }
+}
@@ -0,0 +1,77 @@
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+import com.cs_pum.uncertain_mlc.losses.UncertainHammingLoss;
+import mulan.classifier.MultiLabelOutput;
+import mulan.evaluation.GroundTruth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Predictions shared by the tests: confidences alongside a ground truth, as collected by the experiments.
+ */
+public class TestPredictions {
+    final List<double[]> confidences;
+    final List<double[]> groundTruth;
+
+    TestPredictions(List<double[]> confidences, List<double[]> groundTruth) {
+        this.confidences = confidences;
+        this.groundTruth = groundTruth;
+    }
+
+    /**
+     * Draws uniform confidences, and a ground truth that is relevant with the probability of its confidence.
+     *
+     * @param seed seed of the generator
+     * @param rows number of instances
+     * @param labels number of labels
+     * @param coarse whether to round the confidences to two decimals, to provoke ties
+     * @return random predictions
+     */
+    static TestPredictions randomPredictions(long seed, int rows, int labels, boolean coarse) {
+        Random random = new Random(seed);
+        List<double[]> confidences = new ArrayList<double[]>();
+        List<double[]> groundTruth = new ArrayList<double[]>();
+
+        for (int i = 0; i < rows; i++) {
+            double[] c = new double[labels];
+            double[] gt = new double[labels];
+
+            for (int j = 0; j < c.length; j++) {
+                c[j] = coarse ? Math.round(random.nextDouble() * 100) / 100. : random.nextDouble();
+                gt[j] = random.nextDouble() < c[j] ? 1 : 0;
+            }
+
+            confidences.add(c);
+            groundTruth.add(gt);
+        }
+
+        return new TestPredictions(confidences, groundTruth);
+    }
+
+    int size() {
+        return this.confidences.size();
+    }
+
+    TestPredictions subList(int from, int to) {
+        return new TestPredictions(this.confidences.subList(from, to), this.groundTruth.subList(from, to));
+    }
+
+    PredictionMatrix toMatrix() {
+        return PredictionMatrix.fromLists(this.confidences, this.groundTruth);
+    }
+
+    /**
+     * Evaluates the uncertain hamming loss instance by instance, as mulan does.
+     */
+    UncertainHammingLoss evaluate(double tau, double omega) {
+        UncertainHammingLoss loss = new UncertainHammingLoss(tau, omega);
+
+        for (int i = 0; i < this.confidences.size(); i++) {
+            MultiLabelOutput gt = new MultiLabelOutput(this.groundTruth.get(i), .5);
+            loss.update(new MultiLabelOutput(this.confidences.get(i), .5), new GroundTruth(gt.getBipartition()));
+        }
+
+        return loss;
+    }
+}
@@ -0,0 +1,65 @@
+import com.cs_pum.uncertain_mlc.examples.TauOptimization;
+import com.cs_pum.uncertain_mlc.losses.UncertainHammingLoss;
+import com.cs_pum.uncertain_mlc.optimization.TauSearchResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestTauOptimization {
+    private static void assertSameSearch(TestPredictions data, double omega) {
+        List<double[]> confidences = data.confidences;
+        List<double[]> groundTruth = data.groundTruth;
+        TauOptimization optimization = new TauOptimization();
+        UncertainHammingLoss measure = new UncertainHammingLoss();
+        double tau = optimization.tauGridSearch(confidences, groundTruth, new UncertainHammingLoss(), omega, true);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        TauSearchResult result;
+
+        try {
+            result = optimization.tauGridSearchParallel(confidences, groundTruth, measure, omega, true, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(tau, result.getOptimalTau(), 0);
+        assertEquals(30, result.getNumCandidates());
+
+        // the curves are those of the sequential search, evaluated candidate by candidate
+        for (int i = 0; i < result.getNumCandidates(); i++) {
+            UncertainHammingLoss expected = data.evaluate(result.getTaus()[i], omega);
+
+            assertEquals(expected.getValue(), result.getLosses()[i], 1e-12);
+            assertEquals(expected.getUncertainty(), result.getUncertainties()[i], 1e-12);
+        }
+    }
+
+    @Test
+    public void testParallelGridSearch() {
+        TestPredictions data = TestPredictions.randomPredictions(2018, 500, 6, false);
+
+        assertSameSearch(data, 1. / 3);
+        assertSameSearch(data, .5);
+    }
+
+    @Test
+    public void testParallelGridSearchTie() {
+        List<double[]> confidences = new ArrayList<>();
+        List<double[]> groundTruth = new ArrayList<>();
+
+        // certain confidences only, so that every candidate attains the same loss and the first one is optimal
+        for (int i = 0; i < 100; i++) {
+            confidences.add(new double[]{0, 1, i % 3 == 0 ? 1 : 0});
+            groundTruth.add(new double[]{0, 1, i % 2});
+        }
+
+        assertSameSearch(new TestPredictions(confidences, groundTruth), .5);
+
+        TauSearchResult result = new TauOptimization().tauGridSearchParallel(confidences, groundTruth,
+                new UncertainHammingLoss(), .5, true);
+        assertEquals(0, result.getOptimalIndex());
+    }
+}
@@ -0,0 +1,215 @@
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+import com.cs_pum.uncertain_mlc.evaluation.BootstrapResult;
+import com.cs_pum.uncertain_mlc.evaluation.FusedEvaluator;
+import com.cs_pum.uncertain_mlc.evaluation.FusedMeasure;
+import com.cs_pum.uncertain_mlc.evaluation.FusedMeasures;
+import com.cs_pum.uncertain_mlc.evaluation.PoissonBootstrap;
+import com.cs_pum.uncertain_mlc.losses.DecayedUncertainHammingLoss;
+import com.cs_pum.uncertain_mlc.losses.UncertainHammingKernel;
+import com.cs_pum.uncertain_mlc.losses.UncertainHammingLoss;
+import com.cs_pum.uncertain_mlc.losses.UncertainLossState;
+import com.cs_pum.uncertain_mlc.losses.WindowedUncertainHammingLoss;
+import com.cs_pum.uncertain_mlc.optimization.TauSearchResult;
+import com.cs_pum.uncertain_mlc.optimization.UncertaintyMarginSweep;
+import mulan.classifier.MultiLabelOutput;
+import mulan.evaluation.GroundTruth;
+import mulan.evaluation.measure.HammingLoss;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestUncertainHammingLoss {
+    TestPredictions data;
+
+    @Before
+    public void setUp() {
+        data = TestPredictions.randomPredictions(2018, 1000, 10, false);
+    }
+
+    @Test
+    public void testBatchUpdate() {
+        PredictionMatrix predictions = data.toMatrix();
+
+        for (double tau : new double[]{.1, 1. / 3, .5}) {
+            UncertainHammingLoss expected = data.evaluate(tau, .5);
+            UncertainHammingLoss loss = new UncertainHammingLoss(tau, .5);
+            loss.update(predictions);
+
+            assertEquals(expected.getValue(), loss.getValue(), 1e-12);
+            assertEquals(expected.getUncertainty(), loss.getUncertainty(), 1e-12);
+            assertEquals(expected.getNoUncertain(), loss.getNoUncertain(), 0);
+            assertEquals(expected.getNoErrors(), loss.getNoErrors(), 0);
+        }
+    }
+
+    @Test
+    public void testFloatKernel() {
+        PredictionMatrix predictions = data.toMatrix();
+        float[] narrowed = new float[predictions.getConfidences().length];
+        List<double[]> widened = new ArrayList<double[]>();
+
+        for (int k = 0; k < narrowed.length; k++) {
+            narrowed[k] = (float) predictions.getConfidences()[k];
+        }
+
+        // some confidences on the thresholds, where rounding to float matters most
+        narrowed[0] = .5f;
+        narrowed[1] = (float) .3;
+        narrowed[2] = (float) (1 - .3);
+
+        for (int i = 0; i < data.size(); i++) {
+            double[] c = new double[10];
+
+            for (int j = 0; j < c.length; j++) {
+                c[j] = narrowed[i * 10 + j];
+            }
+
+            widened.add(c);
+        }
+
+        for (double tau : new double[]{.1, .3, .5}) {
+            UncertainHammingLoss expected = new TestPredictions(widened, data.groundTruth).evaluate(tau, .5);
+
+            UncertainLossState state = new UncertainLossState(10);
+            UncertainHammingKernel.accumulate(narrowed, predictions.getGroundTruth(), 0, data.size(), 10,
+                    tau, .5, state);
+
+            assertEquals(expected.getValue(), state.getAccum() / state.getCalls(), 1e-12);
+            assertEquals(expected.getNoUncertain(), state.getUncertainty(), 0);
+            assertEquals(expected.getNoErrors(), state.getErrors(), 0);
+        }
+    }
+
+    @Test
+    public void testMergeAndCopy() throws Exception {
+        PredictionMatrix predictions = data.toMatrix();
+        UncertainHammingLoss expected = data.evaluate(.2, .5);
+        UncertainHammingLoss sharded = new UncertainHammingLoss(.2, .5);
+        sharded.merge(sharded.evaluate(predictions, 500, 1000));
+        sharded.merge(sharded.evaluate(predictions, 0, 500));
+
+        UncertainHammingLoss copy = (UncertainHammingLoss) sharded.makeCopy();
+
+        assertEquals(expected.getValue(), copy.getValue(), 1e-12);
+        assertEquals(expected.getUncertainty(), copy.getUncertainty(), 1e-12);
+        assertEquals(expected.getNoUncertain(), copy.getNoUncertain(), 0);
+    }
+
+    @Test
+    public void testParallelUpdate() {
+        UncertainHammingLoss expected = data.evaluate(.3, 1. / 3);
+        UncertainHammingLoss loss = new UncertainHammingLoss(.3, 1. / 3);
+        loss.updateParallel(data.toMatrix());
+
+        assertEquals(expected.getValue(), loss.getValue(), 1e-12);
+        assertEquals(expected.getNoErrors(), loss.getNoErrors(), 0);
+    }
+
+    @Test
+    public void testFusedEvaluator() {
+        FusedEvaluator evaluator = new FusedEvaluator(.3, 1. / 3);
+        evaluator.evaluate(data.toMatrix());
+        UncertainHammingLoss expected = data.evaluate(.3, 1. / 3);
+        HammingLoss hammingLoss = new HammingLoss();
+
+        for (int i = 0; i < data.size(); i++) {
+            MultiLabelOutput gt = new MultiLabelOutput(data.groundTruth.get(i), .5);
+            hammingLoss.update(new MultiLabelOutput(data.confidences.get(i), .5), new GroundTruth(gt.getBipartition()));
+        }
+
+        for (FusedMeasure measure : evaluator.getMeasures()) {
+            if (measure instanceof FusedMeasures.UncertainHammingLoss) {
+                assertEquals(expected.getValue(), measure.getValue(), 1e-12);
+                assertEquals(expected.getUncertainty(), measure.getUncertainty(), 1e-12);
+            } else if (measure instanceof FusedMeasures.HammingLoss) {
+                assertEquals(hammingLoss.getValue(), measure.getValue(), 1e-12);
+                assertTrue(Double.isNaN(measure.getUncertainty()));
+            } else if (!Double.isNaN(measure.getUncertainty())) {
+                assertTrue(measure.getUncertainty() >= 0 && measure.getUncertainty() <= measure.getValue());
+            }
+        }
+
+        // copies hold the same values, but are independent of the original
+        for (FusedMeasure measure : evaluator.getMeasures()) {
+            FusedMeasure copy = measure.makeCopy();
+
+            assertEquals(measure.getClass(), copy.getClass());
+            assertEquals(measure.getValue(), copy.getValue(), 0);
+            assertEquals(measure.getUncertainty(), copy.getUncertainty(), 0);
+
+            copy.reset();
+            assertTrue(Double.isNaN(copy.getValue()));
+            assertFalse(Double.isNaN(measure.getValue()));
+        }
+
+        // omega is restricted the same way as for the uncertain hamming loss
+        try {
+            evaluator.setOmega(.6);
+            fail("omega > 0.5 must be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals(1. / 3, evaluator.getOmega(), 0);
+        }
+    }
+
+    @Test
+    public void testWindowedAndDecayed() {
+        PredictionMatrix predictions = data.toMatrix();
+        WindowedUncertainHammingLoss windowed = new WindowedUncertainHammingLoss(300, .2, .5);
+        windowed.update(predictions);
+
+        UncertainHammingLoss expected = new UncertainHammingLoss(.2, .5);
+        expected.update(data.subList(700, 1000).toMatrix());
+
+        assertEquals(expected.getValue(), windowed.getValue(), 1e-12);
+        assertEquals(expected.getUncertainty(), windowed.getUncertainty(), 1e-12);
+        assertEquals(expected.getNoUncertain(), windowed.getNoUncertain(), 0);
+
+        // with a half-life far beyond the number of predictions, all predictions weigh (almost) the same
+        DecayedUncertainHammingLoss decayed = new DecayedUncertainHammingLoss(1e12, .2, .5);
+        decayed.update(predictions);
+
+        assertEquals(data.evaluate(.2, .5).getValue(), decayed.getValue(), 1e-9);
+    }
+
+    @Test
+    public void testPoissonBootstrap() {
+        PredictionMatrix predictions = data.toMatrix();
+        BootstrapResult result = new PoissonBootstrap(200, 2018).run(predictions, .3, .5);
+        UncertainHammingLoss expected = data.evaluate(.3, .5);
+
+        assertEquals(expected.getValue(), result.getLoss(), 1e-12);
+        assertEquals(expected.getUncertainty(), result.getUncertainty(), 1e-12);
+
+        double[] interval = result.getLossInterval(.95);
+        assertTrue(interval[0] < result.getLoss() && result.getLoss() < interval[1]);
+
+        // replicates only depend on the seed, not on the scheduling of the threads
+        double[] repeated = new PoissonBootstrap(200, 2018).run(predictions, .3, .5).getOptimalTaus();
+        assertArrayEquals(result.getOptimalTaus(), repeated, 0);
+
+        // replicate taus are exact, i.e. among the candidates of the sweep the point estimate is taken from
+        TauSearchResult sweep = new UncertaintyMarginSweep(predictions).sweep(.5);
+        assertEquals(sweep.getOptimalTau(), result.getOptimalTau(), 0);
+
+        for (double tau : result.getOptimalTaus()) {
+            assertTrue(Arrays.binarySearch(sweep.getTaus(), tau) >= 0);
+        }
+
+        // a single instance gets a weight of zero in about a third of the draws
+        PredictionMatrix single = data.subList(0, 1).toMatrix();
+        BootstrapResult singleResult = new PoissonBootstrap(200, 2018).run(single, .3, .5);
+
+        for (double loss : singleResult.getLosses()) {
+            assertEquals(singleResult.getLoss(), loss, 1e-12);
+        }
+    }
+}
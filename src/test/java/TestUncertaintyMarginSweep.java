@@ -0,0 +1,147 @@
+import com.cs_pum.uncertain_mlc.common.PredictionMatrix;
+import com.cs_pum.uncertain_mlc.losses.UncertainHammingLoss;
+import com.cs_pum.uncertain_mlc.optimization.AdaptiveTauSearch;
+import com.cs_pum.uncertain_mlc.optimization.AdaptiveTauSearchResult;
+import com.cs_pum.uncertain_mlc.optimization.ConfidenceHistogram;
+import com.cs_pum.uncertain_mlc.optimization.LabelThresholdOptimization;
+import com.cs_pum.uncertain_mlc.optimization.LabelThresholds;
+import com.cs_pum.uncertain_mlc.optimization.LossSurface;
+import com.cs_pum.uncertain_mlc.optimization.TauSearchResult;
+import com.cs_pum.uncertain_mlc.optimization.TauSketch;
+import com.cs_pum.uncertain_mlc.optimization.UncertaintyMarginSweep;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestUncertaintyMarginSweep {
+    TestPredictions data;
+
+    @Before
+    public void setUp() {
+        // coarse confidences to provoke ties
+        data = TestPredictions.randomPredictions(2018, 500, 6, true);
+    }
+
+    @Test
+    public void testSweepMatchesLoss() {
+        for (double omega : new double[]{1. / 3, .5}) {
+            TauSearchResult result = new UncertaintyMarginSweep(data.confidences, data.groundTruth).sweep(omega);
+
+            for (int i = 0; i < result.getNumCandidates(); i++) {
+                assertEquals(data.evaluate(result.getTaus()[i], omega).getValue(), result.getLosses()[i], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testSweepBeatsGrid() {
+        TauSearchResult result = new UncertaintyMarginSweep(data.confidences, data.groundTruth).sweep(.5);
+
+        for (int i = 1; i <= 30; i++) {
+            assertTrue(result.getOptimalLoss() <= data.evaluate(i * (.5 / 30), .5).getValue() + 1e-9);
+        }
+    }
+
+    @Test
+    public void testLossSurfaceMatchesLoss() {
+        ConfidenceHistogram histogram = new ConfidenceHistogram(64);
+        histogram.addAll(data.confidences, data.groundTruth);
+        LossSurface surface = new LossSurface(histogram, new double[]{1. / 3, .5});
+
+        for (int t = 0; t < surface.getTaus().length; t++) {
+            assertEquals(data.evaluate(surface.getTaus()[t], .5).getValue(), surface.getLoss(t, 1), 1e-9);
+        }
+    }
+
+    @Test
+    public void testLossSurfaceOnEdges() {
+        // resolutions at which k / resolution and 1 - k / resolution are not exact in floating point
+        for (int resolution : new int[]{100, 1000}) {
+            List<double[]> edgeConfidences = new ArrayList<double[]>();
+            List<double[]> edgeGroundTruth = new ArrayList<double[]>();
+
+            for (int k = 1; k <= resolution / 2; k++) {
+                double tau = (double) k / resolution;
+                edgeConfidences.add(new double[]{tau, 1 - tau});
+                edgeGroundTruth.add(new double[]{k % 2, k % 3 == 0 ? 1 : 0});
+            }
+
+            ConfidenceHistogram histogram = new ConfidenceHistogram(resolution);
+            histogram.addAll(edgeConfidences, edgeGroundTruth);
+            LossSurface surface = new LossSurface(histogram, new double[]{1. / 3});
+            PredictionMatrix predictions = PredictionMatrix.fromLists(edgeConfidences, edgeGroundTruth);
+
+            for (int t = 0; t < surface.getTaus().length; t++) {
+                UncertainHammingLoss loss = new UncertainHammingLoss(surface.getTaus()[t], 1. / 3);
+                loss.update(predictions);
+
+                assertEquals(loss.getValue(), surface.getLoss(t, 0), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testLabelThresholds() {
+        PredictionMatrix predictions = data.toMatrix();
+        LabelThresholds symmetric = LabelThresholdOptimization.optimizeSymmetric(predictions, .5);
+        LabelThresholds asymmetric = LabelThresholdOptimization.optimizeAsymmetric(predictions, .5);
+
+        for (LabelThresholds thresholds : new LabelThresholds[]{symmetric, asymmetric}) {
+            UncertainHammingLoss loss = new UncertainHammingLoss();
+            loss.setOmega(.5);
+            thresholds.applyTo(loss);
+            loss.update(predictions);
+
+            assertEquals(loss.getValue(), thresholds.getLoss(), 1e-9);
+        }
+
+        // every global tau is a feasible symmetric, every symmetric a feasible asymmetric solution
+        assertTrue(symmetric.getLoss() <= new UncertaintyMarginSweep(predictions).sweep(.5).getOptimalLoss() + 1e-9);
+        assertTrue(asymmetric.getLoss() <= symmetric.getLoss() + 1e-9);
+    }
+
+    @Test
+    public void testTauSketch() {
+        TauSketch first = new TauSketch(6, 64);
+        TauSketch second = new TauSketch(6, 64);
+
+        for (int i = 0; i < data.size(); i++) {
+            (i % 2 == 0 ? first : second).offer(data.confidences.get(i), data.groundTruth.get(i));
+        }
+
+        TauSketch sketch = first.merge(second);
+        TauSearchResult exact = new UncertaintyMarginSweep(data.confidences, data.groundTruth).sweep(.5);
+
+        assertEquals(data.size(), sketch.getCount());
+        assertTrue(Math.abs(sketch.optimalTau(.5).getOptimalLoss() - exact.getOptimalLoss())
+                <= sketch.lossErrorBound(.5));
+
+        // the bound scales with the cost of switching a label between certain and uncertain
+        TauSearchResult exactThird = new UncertaintyMarginSweep(data.confidences, data.groundTruth).sweep(1. / 3);
+        assertTrue(Math.abs(sketch.optimalTau(1. / 3).getOptimalLoss() - exactThird.getOptimalLoss())
+                <= sketch.lossErrorBound(1. / 3));
+        assertEquals(sketch.lossErrorBound(.5) * 4 / 3, sketch.lossErrorBound(1. / 3), 1e-12);
+    }
+
+    @Test
+    public void testAdaptiveSearch() {
+        PredictionMatrix predictions = data.toMatrix();
+        AdaptiveTauSearch search = new AdaptiveTauSearch(new UncertainHammingLoss(), 1. / 3);
+        search.setResolution(1e-4);
+        AdaptiveTauSearchResult coarse = search.search(predictions);
+        search.setResolution(1e-8);
+        AdaptiveTauSearchResult fine = search.search(predictions);
+
+        assertEquals(data.evaluate(fine.getOptimalTau(), 1. / 3).getValue(), fine.getOptimalLoss(), 1e-12);
+        assertTrue(fine.getOptimalLoss() <= coarse.getOptimalLoss());
+        assertTrue(new UncertaintyMarginSweep(predictions).sweep(1. / 3).getOptimalLoss()
+                <= fine.getOptimalLoss() + 1e-12);
+        // 10^4 times the resolution takes a fixed number of additional rounds, not 10^4 times the passes
+        assertTrue(fine.getNumPasses() < 3 * coarse.getNumPasses());
+    }
+}